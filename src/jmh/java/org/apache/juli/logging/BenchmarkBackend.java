@@ -0,0 +1,138 @@
+package org.apache.juli.logging;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * The logging setups compared by the benchmarks.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class BenchmarkBackend {
+	/**
+	 * The shared {@link NoOpLog} that this bridge hands out when SLF4J is
+	 * bound to slf4j-nop, without going through the binding.
+	 */
+	static final String NOOP_LOG = "noop-log";
+	/**
+	 * This bridge with SLF4J bound to slf4j-nop. The bridge, slf4j-api and
+	 * slf4j-nop are loaded by an isolated class loader, because slf4j-simple
+	 * is bound on the benchmark class path.
+	 */
+	static final String SLF4J_NOP = "slf4j-nop";
+	/** This bridge with slf4j-simple at level INFO, writing to a null stream. */
+	static final String SLF4J_SIMPLE = "slf4j-simple";
+	/** Like {@link #SLF4J_SIMPLE}, with <code>org.apache.juli.logging.minLevel=INFO</code>. */
+	static final String SLF4J_SIMPLE_MIN_INFO = "slf4j-simple-minLevel-info";
+	/** Tomcat's stock DirectJDKLog from tomcat-juli.jar, writing to a null stream. */
+	static final String TOMCAT_JULI = "tomcat-juli";
+
+	static {
+		// slf4j-simple and the JUL ConsoleHandler both write to System.err
+		System.setErr(new PrintStream(new NullOutputStream()));
+		System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "info");
+	}
+
+	private BenchmarkBackend() {
+	}
+
+	static Log getLog(String backend, String name) {
+		switch (backend) {
+		case NOOP_LOG:
+			return NoOpLog.INSTANCE;
+		case SLF4J_NOP:
+			return Slf4jNop.getLog(name);
+		case SLF4J_SIMPLE:
+			return LogFactory.getLog(name);
+		case SLF4J_SIMPLE_MIN_INFO:
+			return MinLevelLogs.create(DirectSlf4jLog.INFO, name, LoggerFactory.getLogger(name), null);
+		case TOMCAT_JULI:
+			return DirectJDKLog.getInstance(name);
+		default:
+			throw new IllegalArgumentException("Unknown backend: " + backend);
+		}
+	}
+
+	/**
+	 * Holds the isolated class loader, created on first use.
+	 */
+	private static class Slf4jNop {
+		/** Filled by the benchmark profile. */
+		private static final File JARS_DIR = new File("target/benchmark-jars");
+		private static final ClassLoader LOADER = newLoader();
+
+		static Log getLog(String name) {
+			try {
+				return (Log) LOADER.loadClass(LogFactory.class.getName())
+						.getMethod("getLog", String.class)
+						.invoke(null, name);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Error getting log from slf4j-nop class loader", e);
+			}
+		}
+
+		private static ClassLoader newLoader() {
+			File api = new File(JARS_DIR, "slf4j-api.jar");
+			File nop = new File(JARS_DIR, "slf4j-nop.jar");
+			if (!api.isFile() || !nop.isFile()) {
+				throw new IllegalStateException("slf4j-api.jar or slf4j-nop.jar not found in " + JARS_DIR.getAbsolutePath()
+						+ ", run with -Pbenchmark");
+			}
+			try {
+				URL[] urls = {
+						LogFactory.class.getProtectionDomain().getCodeSource().getLocation(),
+						api.toURI().toURL(),
+						nop.toURI().toURL()
+				};
+				return new ChildFirstClassLoader(urls, BenchmarkBackend.class.getClassLoader());
+			} catch (MalformedURLException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Loads the bridge and SLF4J itself. Only the {@link Log} interface is
+	 * shared with the parent, so the benchmarks can call the returned logs
+	 * directly.
+	 */
+	private static class ChildFirstClassLoader extends URLClassLoader {
+		ChildFirstClassLoader(URL[] urls, ClassLoader parent) {
+			super(urls, parent);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (name.equals(Log.class.getName())
+					|| !name.startsWith("org.apache.juli.logging.") && !name.startsWith("org.slf4j.")) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> c = findLoadedClass(name);
+				if (c == null) {
+					c = findClass(name);
+				}
+				if (resolve) {
+					resolveClass(c);
+				}
+				return c;
+			}
+		}
+	}
+
+	private static class NullOutputStream extends OutputStream {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+}
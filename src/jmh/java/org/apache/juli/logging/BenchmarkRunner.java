@@ -0,0 +1,41 @@
+package org.apache.juli.logging;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks, or the ones matching the regular expression given as
+ * first argument, with 1, 4 and one thread per available processor. Results
+ * are written as JSON to <code>target/jmh-&lt;threads&gt;-threads.json</code>.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class BenchmarkRunner {
+	public static void main(String[] args) throws RunnerException {
+		Set<Integer> threadCounts = new LinkedHashSet<>();
+		threadCounts.add(1);
+		threadCounts.add(4);
+		threadCounts.add(Runtime.getRuntime().availableProcessors());
+
+		new File("target").mkdirs();
+		for (int threads : threadCounts) {
+			ChainedOptionsBuilder options = new OptionsBuilder()
+					.threads(threads)
+					.resultFormat(ResultFormatType.JSON)
+					.result("target/jmh-" + threads + "-threads.json");
+			if (args.length > 0) {
+				options.include(args[0]);
+			} else {
+				options.include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark");
+			}
+			new Runner(options.build()).run();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package org.apache.juli.logging;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of looking up an existing logger, as done by every class that
+ * initializes a static {@link Log} field.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GetLogBenchmark {
+	private static final String NAME = "org.apache.catalina.core.StandardContext";
+
+	@Benchmark
+	public Log slf4j() {
+		return LogFactory.getLog(NAME);
+	}
+
+	@Benchmark
+	public Log tomcatJuli() {
+		return DirectJDKLog.getInstance(NAME);
+	}
+}
@@ -0,0 +1,68 @@
+package org.apache.juli.logging;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the <code>isXEnabled()</code> guards.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LevelGuardBenchmark {
+	@Param({ BenchmarkBackend.NOOP_LOG, BenchmarkBackend.SLF4J_NOP, BenchmarkBackend.SLF4J_SIMPLE, BenchmarkBackend.TOMCAT_JULI })
+	public String backend;
+
+	private Log log;
+
+	@Setup
+	public void setup() {
+		log = BenchmarkBackend.getLog(backend, LevelGuardBenchmark.class.getName());
+	}
+
+	@Benchmark
+	public boolean isTraceEnabled() {
+		return log.isTraceEnabled();
+	}
+
+	@Benchmark
+	public boolean isDebugEnabled() {
+		return log.isDebugEnabled();
+	}
+
+	@Benchmark
+	public boolean isInfoEnabled() {
+		return log.isInfoEnabled();
+	}
+
+	@Benchmark
+	public boolean isWarnEnabled() {
+		return log.isWarnEnabled();
+	}
+
+	@Benchmark
+	public boolean isErrorEnabled() {
+		return log.isErrorEnabled();
+	}
+
+	@Benchmark
+	public boolean isFatalEnabled() {
+		return log.isFatalEnabled();
+	}
+}
@@ -0,0 +1,75 @@
+package org.apache.juli.logging;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of logging statements without guard. DEBUG is disabled for all
+ * backends, INFO is enabled for all backends except noop-log.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LoggingBenchmark {
+	@Param({ BenchmarkBackend.NOOP_LOG, BenchmarkBackend.SLF4J_NOP, BenchmarkBackend.SLF4J_SIMPLE, BenchmarkBackend.TOMCAT_JULI })
+	public String backend;
+
+	private Log log;
+	private String stringMessage;
+	private Object objectMessage;
+	private Throwable throwable;
+
+	@Setup
+	public void setup() {
+		log = BenchmarkBackend.getLog(backend, LoggingBenchmark.class.getName());
+		stringMessage = "Processing request";
+		objectMessage = new StringBuilder("Processing request ").append(42);
+		throwable = new IllegalStateException("Test exception");
+	}
+
+	@Benchmark
+	public void disabledString() {
+		log.debug(stringMessage);
+	}
+
+	@Benchmark
+	public void disabledObject() {
+		log.debug(objectMessage);
+	}
+
+	@Benchmark
+	public void disabledThrowable() {
+		log.debug(stringMessage, throwable);
+	}
+
+	@Benchmark
+	public void enabledString() {
+		log.info(stringMessage);
+	}
+
+	@Benchmark
+	public void enabledObject() {
+		log.info(objectMessage);
+	}
+
+	@Benchmark
+	public void enabledThrowable() {
+		log.info(stringMessage, throwable);
+	}
+}
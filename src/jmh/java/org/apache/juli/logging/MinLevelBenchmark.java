@@ -0,0 +1,68 @@
+package org.apache.juli.logging;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A request processing loop with guarded DEBUG statements, compared to the
+ * same loop without logging. With a minimum level of INFO the guarded
+ * statements are removed by the JIT and <code>guardedDebug</code> scores
+ * the same as <code>noLogging</code>. Run with <code>-prof perfasm</code>
+ * to inspect the compiled loop.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MinLevelBenchmark {
+	@Param({ BenchmarkBackend.SLF4J_SIMPLE, BenchmarkBackend.SLF4J_SIMPLE_MIN_INFO })
+	public String backend;
+
+	private Log log;
+	private int[] headers;
+
+	@Setup
+	public void setup() {
+		log = BenchmarkBackend.getLog(backend, MinLevelBenchmark.class.getName());
+		headers = new int[64];
+		for (int i = 0; i < headers.length; i++) {
+			headers[i] = i * 31;
+		}
+	}
+
+	@Benchmark
+	public int noLogging() {
+		int hash = 0;
+		for (int i = 0; i < headers.length; i++) {
+			hash = hash * 17 + headers[i];
+		}
+		return hash;
+	}
+
+	@Benchmark
+	public int guardedDebug() {
+		int hash = 0;
+		for (int i = 0; i < headers.length; i++) {
+			hash = hash * 17 + headers[i];
+			if (log.isDebugEnabled()) {
+				log.debug("Processed header " + i + ", hash " + hash);
+			}
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,62 @@
+package org.apache.juli.logging;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cold creation of as many loggers as a Tomcat startup does, each in a
+ * fresh JVM, with eager and with lazy resolution of the SLF4J loggers. Only
+ * a few of the loggers are used afterwards, as during a typical startup.
+ * Run with a single thread.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class StartupBenchmark {
+	private static final int LOGGER_COUNT = 3000;
+	private static final int USED_LOGGER_INTERVAL = 50;
+
+	@Param({ "false", "true" })
+	public boolean lazy;
+
+	private String[] names;
+
+	@Setup
+	public void setup() {
+		// initializes slf4j-simple with a null stream
+		BenchmarkBackend.getLog(BenchmarkBackend.SLF4J_SIMPLE, StartupBenchmark.class.getName());
+		LogFactory.getFactory().setAttribute(DirectSlf4jLog.LAZY_PROPERTY, String.valueOf(lazy));
+		names = new String[LOGGER_COUNT];
+		for (int i = 0; i < LOGGER_COUNT; i++) {
+			names[i] = "org.apache.catalina.component" + (i % 40) + ".Class" + i;
+		}
+	}
+
+	@Benchmark
+	public void createLoggers(Blackhole blackhole) {
+		for (int i = 0; i < LOGGER_COUNT; i++) {
+			Log log = LogFactory.getLog(names[i]);
+			if (i % USED_LOGGER_INTERVAL == 0) {
+				blackhole.consume(log.isDebugEnabled());
+			}
+			blackhole.consume(log);
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package org.apache.juli.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer of log events with a
+ * dedicated consumer thread that writes the events to their
+ * {@link DirectSlf4jLog} in batches.
+ * <p>
+ * All slots are allocated up front. Producers claim a slot by CAS on the
+ * tail sequence and publish it by writing the slot's sequence, so no locks
+ * are taken on either side. On shutdown, the {@link #CLOSED} bit is set in
+ * the tail sequence first, so that no further slots can be claimed, and the
+ * consumer exits once all claimed slots have been written.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class AsyncDispatcher {
+	static final String ASYNC_PROPERTY = "org.apache.juli.logging.async";
+	static final String BUFFER_SIZE_PROPERTY = "org.apache.juli.logging.async.bufferSize";
+	static final String OVERFLOW_POLICY_PROPERTY = "org.apache.juli.logging.async.overflowPolicy";
+	static final String SHUTDOWN_TIMEOUT_PROPERTY = "org.apache.juli.logging.async.shutdownTimeout";
+
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+	private static final int DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 5000;
+	private static final int BATCH_SIZE = 256;
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	/** Set in the tail sequence once the dispatcher has been shut down. */
+	private static final long CLOSED = 1L << 62;
+
+	/**
+	 * What to do when a producer finds the buffer full.
+	 */
+	enum OverflowPolicy {
+		/** Wait until the consumer has made room. */
+		BLOCK,
+		/** Discard TRACE, DEBUG and INFO events, wait for WARN and above. */
+		DROP_BELOW_WARN,
+		/** Discard all events. */
+		DROP_ALL
+	}
+
+	private static final class Slot {
+		volatile long sequence;
+		DirectSlf4jLog log;
+		int level;
+		Object message;
+		Throwable throwable;
+	}
+
+	private final Slot[] slots;
+	private final int mask;
+	private final OverflowPolicy overflowPolicy;
+	private final long shutdownTimeoutMillis;
+	/** Next sequence to be claimed, with {@link #CLOSED} set after shutdown. */
+	private final AtomicLong tail = new AtomicLong();
+	private final LongAdder dropped = new LongAdder();
+	private final Thread consumer;
+	/** Next sequence to be consumed. Only written by the consumer thread. */
+	private volatile long head;
+
+	AsyncDispatcher(int bufferSize, OverflowPolicy overflowPolicy, long shutdownTimeoutMillis) {
+		int capacity = Integer.highestOneBit(Math.max(1, bufferSize - 1)) << 1;
+		this.slots = new Slot[capacity];
+		for (int i = 0; i < capacity; i++) {
+			Slot slot = new Slot();
+			slot.sequence = i;
+			slots[i] = slot;
+		}
+		this.mask = capacity - 1;
+		this.overflowPolicy = overflowPolicy;
+		this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+		this.consumer = new Thread(this::consume, "tomcat-juli-slf4j-async");
+		this.consumer.setDaemon(true);
+		// do not pin the class loader of the web application that logged first
+		this.consumer.setContextClassLoader(AsyncDispatcher.class.getClassLoader());
+		this.consumer.start();
+	}
+
+	static AsyncDispatcher fromConfig() {
+		int bufferSize = LogFactory.getConfigValue(BUFFER_SIZE_PROPERTY, DEFAULT_BUFFER_SIZE);
+		if (bufferSize < 2) {
+			throw new LogConfigurationException("Invalid async buffer size: " + bufferSize);
+		}
+		String overflowPolicyName = LogFactory.getConfigValue(OVERFLOW_POLICY_PROPERTY, OverflowPolicy.BLOCK.name());
+		OverflowPolicy overflowPolicy;
+		try {
+			overflowPolicy = OverflowPolicy.valueOf(overflowPolicyName.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new LogConfigurationException("Invalid async overflow policy: " + overflowPolicyName, e);
+		}
+		int shutdownTimeoutMillis = LogFactory.getConfigValue(SHUTDOWN_TIMEOUT_PROPERTY, DEFAULT_SHUTDOWN_TIMEOUT_MILLIS);
+		return new AsyncDispatcher(bufferSize, overflowPolicy, shutdownTimeoutMillis);
+	}
+
+	/**
+	 * Publish an event. Writes the event synchronously if the dispatcher has
+	 * been shut down, or if the buffer is full and the consumer thread has
+	 * died.
+	 */
+	void publish(DirectSlf4jLog log, int level, Object message, Throwable throwable) {
+		long sequence;
+		Slot slot;
+		while (true) {
+			sequence = tail.get();
+			if ((sequence & CLOSED) != 0) {
+				log.write(level, message, throwable);
+				return;
+			}
+			slot = slots[(int) sequence & mask];
+			long diff = slot.sequence - sequence;
+			if (diff == 0) {
+				if (tail.compareAndSet(sequence, sequence + 1)) {
+					break;
+				}
+			} else if (diff < 0) {
+				// buffer full
+				if (!consumer.isAlive()) {
+					log.write(level, message, throwable);
+					return;
+				}
+				if (overflowPolicy == OverflowPolicy.DROP_ALL
+						|| (overflowPolicy == OverflowPolicy.DROP_BELOW_WARN && level < DirectSlf4jLog.WARN)) {
+					dropped.increment();
+					return;
+				}
+				LockSupport.parkNanos(FULL_PARK_NANOS);
+			}
+			// else: another producer claimed this slot, retry
+		}
+		slot.log = log;
+		slot.level = level;
+		slot.message = message;
+		slot.throwable = throwable;
+		slot.sequence = sequence + 1;
+	}
+
+	/**
+	 * Wait until all events published before this call have been written,
+	 * but not longer than the shutdown timeout.
+	 */
+	void flush() {
+		if (Thread.currentThread() == consumer) {
+			return;
+		}
+		long target = tail.get() & ~CLOSED;
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+		while (head < target && consumer.isAlive() && System.nanoTime() - deadline < 0) {
+			LockSupport.unpark(consumer);
+			LockSupport.parkNanos(FULL_PARK_NANOS);
+		}
+	}
+
+	/**
+	 * Stop accepting events and wait for the consumer to write all pending
+	 * events, but not longer than the shutdown timeout. Events published
+	 * after this call are written synchronously.
+	 */
+	void shutdown() {
+		long sequence = tail.get();
+		while ((sequence & CLOSED) == 0 && !tail.compareAndSet(sequence, sequence | CLOSED)) {
+			sequence = tail.get();
+		}
+		LockSupport.unpark(consumer);
+		try {
+			consumer.join(shutdownTimeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	private void consume() {
+		while (true) {
+			int consumed = drain();
+			if (consumed == 0) {
+				long tail = this.tail.get();
+				// slots claimed before closing may not be published yet
+				if ((tail & CLOSED) != 0 && head == (tail & ~CLOSED)) {
+					return;
+				}
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+			}
+		}
+	}
+
+	private int drain() {
+		long sequence = head;
+		int consumed = 0;
+		while (consumed < BATCH_SIZE) {
+			Slot slot = slots[(int) sequence & mask];
+			if (slot.sequence != sequence + 1) {
+				break;
+			}
+			try {
+				slot.log.write(slot.level, slot.message, slot.throwable);
+			} catch (Throwable e) {
+				// keep the consumer alive, producers would wait for it forever
+				System.err.println("Error writing asynchronous log event: " + e);
+			}
+			slot.log = null;
+			slot.message = null;
+			slot.throwable = null;
+			slot.sequence = sequence + slots.length;
+			sequence++;
+			consumed++;
+		}
+		head = sequence;
+		return consumed;
+	}
+}
@@ -0,0 +1,205 @@
+package org.apache.juli.logging;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decoder for files written by {@link BinaryLogWriter}. Prints one line
+ * of text per event, or one JSON object per line:
+ *
+ * <pre>
+ * java -cp bin/tomcat-juli.jar org.apache.juli.logging.BinaryLogDecoder [--json] logs/events.bin
+ * </pre>
+ *
+ * An incomplete last event, e.g. after a crash, is ignored.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public final class BinaryLogDecoder {
+	private final InputStream in;
+	private final Map<Long, String> loggers = new HashMap<>();
+	private final Map<Long, String> templates = new HashMap<>();
+	private long timestamp;
+
+	private BinaryLogDecoder(InputStream in) {
+		this.in = in;
+	}
+
+	public static void main(String[] args) throws IOException {
+		boolean json = args.length == 2 && "--json".equals(args[0]);
+		if (args.length != 1 && !json) {
+			System.err.println("Usage: java " + BinaryLogDecoder.class.getName() + " [--json] <binary log file>");
+			System.exit(1);
+		}
+		try (InputStream in = new BufferedInputStream(new FileInputStream(args[args.length - 1]))) {
+			decode(in, System.out, json);
+		}
+	}
+
+	static void decode(InputStream in, PrintStream out, boolean json) throws IOException {
+		byte[] magic = new byte[BinaryLogWriter.MAGIC.length];
+		if (in.read(magic) != magic.length || !Arrays.equals(magic, BinaryLogWriter.MAGIC)) {
+			throw new IOException("Not a binary log");
+		}
+		BinaryLogDecoder decoder = new BinaryLogDecoder(in);
+		try {
+			int tag;
+			while ((tag = in.read()) != -1) {
+				decoder.decodeEntry(tag, out, json);
+			}
+		} catch (EOFException e) {
+			// incomplete last entry
+		}
+	}
+
+	private void decodeEntry(int tag, PrintStream out, boolean json) throws IOException {
+		switch (tag) {
+		case BinaryLogWriter.TAG_LOGGER:
+			loggers.put(readVarint(), readString());
+			break;
+		case BinaryLogWriter.TAG_TEMPLATE:
+			templates.put(readVarint(), readString());
+			break;
+		case BinaryLogWriter.TAG_EVENT:
+		case BinaryLogWriter.TAG_EVENT_INLINE:
+			decodeEvent(tag == BinaryLogWriter.TAG_EVENT_INLINE, out, json);
+			break;
+		default:
+			throw new IOException("Invalid tag: " + tag);
+		}
+	}
+
+	private void decodeEvent(boolean inline, PrintStream out, boolean json) throws IOException {
+		int level = readByte();
+		timestamp += unzigzag(readVarint());
+		long loggerId = readVarint();
+		String template;
+		if (inline) {
+			template = readString();
+		} else {
+			long templateId = readVarint();
+			template = templates.get(templateId);
+			if (template == null) {
+				throw new IOException("Undefined template: " + templateId);
+			}
+		}
+		int argumentCount = (int) readVarint();
+		StringBuilder message = new StringBuilder(template.length() + argumentCount * 8);
+		int start = 0;
+		for (int i = 0; i < argumentCount; i++) {
+			int end = template.indexOf(BinaryLogWriter.PLACEHOLDER, start);
+			if (end == -1) {
+				throw new IOException("Too many arguments for template: " + template);
+			}
+			message.append(template, start, end).append(unzigzag(readVarint()));
+			start = end + 1;
+		}
+		message.append(template, start, template.length());
+		String stackTrace = readString();
+
+		String levelName = DirectSlf4jLog.toLevelName(level);
+		String logger = loggers.getOrDefault(loggerId, "#" + loggerId);
+		if (json) {
+			StringBuilder sb = new StringBuilder(message.length() + stackTrace.length() + 100);
+			sb.append("{\"timestamp\":\"").append(Instant.ofEpochMilli(timestamp));
+			sb.append("\",\"level\":\"").append(levelName);
+			sb.append("\",\"logger\":");
+			appendJsonString(sb, logger);
+			sb.append(",\"message\":");
+			appendJsonString(sb, message);
+			if (!stackTrace.isEmpty()) {
+				sb.append(",\"stackTrace\":");
+				appendJsonString(sb, stackTrace);
+			}
+			sb.append('}');
+			out.println(sb);
+		} else {
+			out.println(Instant.ofEpochMilli(timestamp) + " " + levelName + " " + logger + " - " + message);
+			if (!stackTrace.isEmpty()) {
+				out.print(stackTrace);
+			}
+		}
+	}
+
+	private static void appendJsonString(StringBuilder sb, CharSequence s) {
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+				break;
+			}
+		}
+		sb.append('"');
+	}
+
+	private int readByte() throws IOException {
+		int b = in.read();
+		if (b == -1) {
+			throw new EOFException();
+		}
+		return b;
+	}
+
+	private long readVarint() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Invalid varint");
+	}
+
+	private String readString() throws IOException {
+		long length = readVarint();
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Invalid string length: " + length);
+		}
+		byte[] bytes = new byte[(int) length];
+		int offset = 0;
+		while (offset < bytes.length) {
+			int n = in.read(bytes, offset, bytes.length - offset);
+			if (n == -1) {
+				throw new EOFException();
+			}
+			offset += n;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
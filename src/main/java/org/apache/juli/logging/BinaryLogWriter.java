@@ -0,0 +1,363 @@
+package org.apache.juli.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes events of selected loggers in a compact binary format instead of
+ * passing them to SLF4J. Decoded with {@link BinaryLogDecoder}.
+ * <p>
+ * Messages from Tomcat are already formatted, so templates are derived by
+ * replacing each run of decimal digits with a placeholder and passing its
+ * value as argument. Logger names and templates are interned into a
+ * dictionary that is written to the file on first use. Once the dictionary
+ * holds the maximum number of templates, further templates are written
+ * inline with each event.
+ * <p>
+ * The file starts with the 8 byte magic {@code JULIBIN1}, followed by
+ * entries starting with a tag byte:
+ * <ul>
+ * <li>{@value #TAG_LOGGER}: logger definition with varint ID and string</li>
+ * <li>{@value #TAG_TEMPLATE}: template definition with varint ID and
+ * string</li>
+ * <li>{@value #TAG_EVENT} and {@value #TAG_EVENT_INLINE}: event with level
+ * byte, zigzag varint timestamp difference to the previous event in
+ * milliseconds, varint logger ID, varint template ID or inline template
+ * string, varint argument count, zigzag varint arguments and the stack
+ * trace as string, empty for none</li>
+ * </ul>
+ * Strings are written as varint length and UTF-8 bytes. Events are encoded
+ * into a buffer under a lock. The buffer is handed off for writing when it
+ * is full, with ERROR events, with the first event after the flush
+ * interval, by the periodic housekeeping of {@link DirectSlf4jLog} once the
+ * flush interval has passed, and on release. Handed off buffers are
+ * written to the file channel by the given flusher, so that logging
+ * threads do not wait for the file system. Only if the flusher falls
+ * behind by {@value #MAX_PENDING_BUFFERS} buffers, the logging thread
+ * writes them itself. Once closed, the writer rejects events, so that they
+ * can be written to SLF4J instead.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class BinaryLogWriter {
+	static final String BINARY_PROPERTY = "org.apache.juli.logging.binary";
+	/** Comma separated logger name prefixes, all loggers if not set. Read by {@link LogConfig}. */
+	static final String LOGGERS_PROPERTY = "org.apache.juli.logging.binary.loggers";
+	static final String MAX_TEMPLATES_PROPERTY = "org.apache.juli.logging.binary.maxTemplates";
+	static final String FLUSH_INTERVAL_PROPERTY = "org.apache.juli.logging.binary.flushInterval";
+
+	static final byte[] MAGIC = "JULIBIN1".getBytes(StandardCharsets.US_ASCII);
+	static final int TAG_LOGGER = 1;
+	static final int TAG_TEMPLATE = 2;
+	static final int TAG_EVENT = 3;
+	static final int TAG_EVENT_INLINE = 4;
+	/** Stands for an argument in templates. */
+	static final char PLACEHOLDER = '\0';
+
+	private static final int DEFAULT_MAX_TEMPLATES = 4096;
+	private static final int DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_PENDING_BUFFERS = 16;
+	/** Longer digit runs may not fit into a long. */
+	private static final int MAX_ARGUMENT_DIGITS = 18;
+	private static final long[] NO_ARGUMENTS = new long[0];
+
+	/** Guards the channel, acquired before the lock of this writer. */
+	private final Object channelLock = new Object();
+	private final FileChannel channel;
+	/** <code>null</code> to write on the logging thread. */
+	private final Executor flusher;
+	private final AtomicBoolean flushRequested = new AtomicBoolean();
+	/** Buffers handed off for writing, guarded by this writer. */
+	private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+	/** A written buffer for reuse, guarded by this writer. */
+	private byte[] spare;
+	private final int maxTemplates;
+	private final long flushIntervalNanos;
+	private final Map<String, Integer> loggerIds = new HashMap<>();
+	private final Map<String, Integer> templateIds = new HashMap<>();
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int count;
+	private long lastTimestamp;
+	private long lastFlush = System.nanoTime();
+	private volatile boolean closed;
+
+	/**
+	 * @param flusher Runs the channel writes, or <code>null</code> to write
+	 *        on the logging thread
+	 */
+	BinaryLogWriter(File file, int maxTemplates, long flushIntervalMillis, Executor flusher) throws IOException {
+		this.flusher = flusher;
+		this.maxTemplates = maxTemplates;
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+		Path path = file.toPath();
+		if (Files.exists(path)) {
+			// dictionary IDs start over, so appending is not possible
+			Files.move(path, path.resolveSibling(path.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+		}
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		channel.write(ByteBuffer.wrap(MAGIC));
+	}
+
+	static BinaryLogWriter fromConfig(Executor flusher) {
+		String file = LogFactory.getConfigValue(BINARY_PROPERTY, null);
+		int maxTemplates = LogFactory.getConfigValue(MAX_TEMPLATES_PROPERTY, DEFAULT_MAX_TEMPLATES);
+		if (maxTemplates < 0) {
+			throw new LogConfigurationException("Invalid value for " + MAX_TEMPLATES_PROPERTY + ": " + maxTemplates);
+		}
+		int flushIntervalMillis = LogFactory.getConfigValue(FLUSH_INTERVAL_PROPERTY, DEFAULT_FLUSH_INTERVAL_MILLIS);
+		if (flushIntervalMillis < 0) {
+			throw new LogConfigurationException("Invalid value for " + FLUSH_INTERVAL_PROPERTY + ": " + flushIntervalMillis);
+		}
+		try {
+			return new BinaryLogWriter(new File(file), maxTemplates, flushIntervalMillis, flusher);
+		} catch (IOException e) {
+			throw new LogConfigurationException("Error creating binary log " + file, e);
+		}
+	}
+
+	/**
+	 * @return Whether the event was written, <code>false</code> if the
+	 *         writer has been closed
+	 */
+	boolean write(String loggerName, int level, String message, Throwable t) {
+		if (closed) {
+			return false;
+		}
+		long[] arguments = NO_ARGUMENTS;
+		int argumentCount = 0;
+		StringBuilder template = null;
+		int literalStart = 0;
+		int length = message.length();
+		if (message.indexOf(PLACEHOLDER) == -1) {
+			for (int i = 0; i < length; i++) {
+				if (!isDigit(message.charAt(i))) {
+					continue;
+				}
+				int end = i + 1;
+				while (end < length && isDigit(message.charAt(end))) {
+					end++;
+				}
+				// leading zeros would get lost
+				if (end - i <= MAX_ARGUMENT_DIGITS && (message.charAt(i) != '0' || end - i == 1)) {
+					if (template == null) {
+						template = new StringBuilder(length);
+						arguments = new long[4];
+					}
+					template.append(message, literalStart, i).append(PLACEHOLDER);
+					if (argumentCount == arguments.length) {
+						arguments = Arrays.copyOf(arguments, argumentCount * 2);
+					}
+					arguments[argumentCount++] = Long.parseLong(message.substring(i, end));
+					literalStart = end;
+				}
+				i = end - 1;
+			}
+		}
+		String templateString = message;
+		if (template != null) {
+			templateString = template.append(message, literalStart, length).toString();
+		}
+		String stackTrace = "";
+		if (t != null) {
+			StringWriter sw = new StringWriter();
+			t.printStackTrace(new PrintWriter(sw));
+			stackTrace = sw.toString();
+		}
+		int pendingBuffers = encode(loggerName, level, templateString, arguments, argumentCount, stackTrace);
+		if (pendingBuffers < 0) {
+			return false;
+		}
+		if (pendingBuffers >= MAX_PENDING_BUFFERS) {
+			// the flusher does not keep up
+			writePending();
+		} else if (pendingBuffers > 0) {
+			requestFlush();
+		}
+		return true;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * @return The number of buffers handed off for writing, or -1 if the
+	 *         writer has been closed
+	 */
+	private synchronized int encode(String loggerName, int level, String template, long[] arguments, int argumentCount, String stackTrace) {
+		if (closed) {
+			return -1;
+		}
+		Integer loggerId = loggerIds.get(loggerName);
+		if (loggerId == null) {
+			loggerId = loggerIds.size() + 1;
+			loggerIds.put(loggerName, loggerId);
+			writeByte(TAG_LOGGER);
+			writeVarint(loggerId);
+			writeString(loggerName);
+		}
+		Integer templateId = templateIds.get(template);
+		if (templateId == null && templateIds.size() < maxTemplates) {
+			templateId = templateIds.size() + 1;
+			templateIds.put(template, templateId);
+			writeByte(TAG_TEMPLATE);
+			writeVarint(templateId);
+			writeString(template);
+		}
+		long timestamp = System.currentTimeMillis();
+		writeByte(templateId == null ? TAG_EVENT_INLINE : TAG_EVENT);
+		writeByte(level);
+		writeVarint(zigzag(timestamp - lastTimestamp));
+		lastTimestamp = timestamp;
+		writeVarint(loggerId);
+		if (templateId == null) {
+			writeString(template);
+		} else {
+			writeVarint(templateId);
+		}
+		writeVarint(argumentCount);
+		for (int i = 0; i < argumentCount; i++) {
+			writeVarint(zigzag(arguments[i]));
+		}
+		writeString(stackTrace);
+
+		long now = System.nanoTime();
+		if (count >= BUFFER_SIZE || level >= DirectSlf4jLog.ERROR || now - lastFlush >= flushIntervalNanos) {
+			handOff(now);
+		}
+		return pending.size();
+	}
+
+	/**
+	 * Write buffered events to the file if the flush interval has passed,
+	 * and all buffers that have been handed off.
+	 */
+	void flushIfDue(long now) {
+		synchronized (this) {
+			if (!closed && count > 0 && now - lastFlush >= flushIntervalNanos) {
+				handOff(now);
+			}
+		}
+		writePending();
+	}
+
+	/**
+	 * Write all buffered events to the file and close it.
+	 */
+	void close() {
+		synchronized (channelLock) {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				handOff(System.nanoTime());
+				closed = true;
+			}
+			writePending();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				System.err.println("Error closing binary log: " + e);
+			}
+		}
+	}
+
+	/** Must hold the lock of this writer. */
+	private void handOff(long now) {
+		if (count > 0) {
+			pending.add(ByteBuffer.wrap(buffer, 0, count));
+			buffer = spare != null ? spare : new byte[BUFFER_SIZE];
+			spare = null;
+			count = 0;
+		}
+		lastFlush = now;
+	}
+
+	private void requestFlush() {
+		if (flusher == null) {
+			writePending();
+		} else if (flushRequested.compareAndSet(false, true)) {
+			flusher.execute(this::writePending);
+		}
+	}
+
+	/**
+	 * Write the buffers that have been handed off, in order.
+	 */
+	private void writePending() {
+		flushRequested.set(false);
+		synchronized (channelLock) {
+			while (true) {
+				ByteBuffer bb;
+				synchronized (this) {
+					bb = pending.poll();
+				}
+				if (bb == null) {
+					return;
+				}
+				try {
+					while (bb.hasRemaining()) {
+						channel.write(bb);
+					}
+				} catch (IOException e) {
+					System.err.println("Error writing binary log: " + e);
+				}
+				synchronized (this) {
+					// do not keep a buffer grown for a huge event
+					if (bb.capacity() == BUFFER_SIZE) {
+						spare = bb.array();
+					}
+				}
+			}
+		}
+	}
+
+	private void ensureCapacity(int additional) {
+		if (count + additional > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + additional));
+		}
+	}
+
+	private void writeByte(int b) {
+		ensureCapacity(1);
+		buffer[count++] = (byte) b;
+	}
+
+	private void writeVarint(long value) {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[count++] = (byte) value;
+	}
+
+	private void writeString(String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarint(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+}
@@ -0,0 +1,217 @@
+package org.apache.juli.logging;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Renders log messages up to a maximum length, appending a marker to
+ * truncated messages.
+ * <p>
+ * Character sequences are copied only up to the limit. Collections and
+ * maps that use the default {@code toString()} of {@link AbstractCollection}
+ * or {@link AbstractMap} are rendered in the same format, element by
+ * element, and rendering stops once the limit is reached. The same holds
+ * for {@link Formattable} messages. Other objects are rendered with
+ * {@code toString()} and truncated afterwards; at least the truncated
+ * string is then not passed on to the backend.
+ * <p>
+ * Rendering uses a reusable per-thread buffer, so only the final string is
+ * allocated.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class BoundedMessageRenderer {
+	static final String MAX_LENGTH_PROPERTY = "org.apache.juli.logging.maxMessageLength";
+
+	private static final String TRUNCATED_MARKER = "...[truncated]";
+
+	private static final int OTHER = 0;
+	private static final int COLLECTION = 1;
+	private static final int MAP = 2;
+
+	/** How instances of a class can be rendered incrementally. */
+	private static final ClassValue<Integer> KINDS = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			Class<?> toStringClass;
+			try {
+				toStringClass = type.getMethod("toString").getDeclaringClass();
+			} catch (NoSuchMethodException e) {
+				return OTHER;
+			}
+			if (toStringClass == AbstractCollection.class) {
+				return COLLECTION;
+			}
+			if (toStringClass == AbstractMap.class) {
+				return MAP;
+			}
+			return OTHER;
+		}
+	};
+
+	private static final class Buffer {
+		final StringBuilder sb;
+		boolean inUse;
+
+		Buffer(int capacity) {
+			this.sb = new StringBuilder(capacity);
+		}
+	}
+
+	/** Thrown by the bounded appendable to stop formatting early. */
+	private static final class LimitReachedException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		LimitReachedException() {
+			super(null, null, false, false);
+		}
+	}
+
+	private final int maxLength;
+	private final ThreadLocal<Buffer> buffers;
+
+	BoundedMessageRenderer(int maxLength) {
+		this.maxLength = maxLength;
+		this.buffers = ThreadLocal.withInitial(() -> new Buffer(maxLength + 1));
+	}
+
+	static BoundedMessageRenderer fromConfig() {
+		return new BoundedMessageRenderer(LogFactory.getConfigValue(MAX_LENGTH_PROPERTY, 0));
+	}
+
+	String render(Object message) {
+		if (message instanceof String) {
+			String s = (String) message;
+			if (s.length() <= maxLength) {
+				return s;
+			}
+			return s.substring(0, maxLength) + TRUNCATED_MARKER;
+		}
+		if (message == null) {
+			return "null";
+		}
+
+		Buffer buffer = buffers.get();
+		StringBuilder sb;
+		if (buffer.inUse) {
+			// toString() of an element logged to this thread
+			sb = new StringBuilder();
+		} else {
+			sb = buffer.sb;
+			buffer.inUse = true;
+		}
+		try {
+			sb.setLength(0);
+			append(sb, message);
+			if (sb.length() > maxLength) {
+				sb.setLength(maxLength);
+				sb.append(TRUNCATED_MARKER);
+			}
+			return sb.toString();
+		} finally {
+			if (sb == buffer.sb) {
+				buffer.inUse = false;
+				if (sb.capacity() > 2 * (maxLength + TRUNCATED_MARKER.length())) {
+					// do not keep buffers grown by an element beyond the limit
+					buffers.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Append the object, stopping once more than the maximum length has
+	 * been appended.
+	 */
+	private void append(StringBuilder sb, Object o) {
+		if (o == null) {
+			sb.append("null");
+		} else if (o instanceof CharSequence) {
+			CharSequence cs = (CharSequence) o;
+			sb.append(cs, 0, Math.min(cs.length(), remaining(sb)));
+		} else if (o instanceof Formattable) {
+			appendFormattable(sb, (Formattable) o);
+		} else {
+			int kind = KINDS.get(o.getClass());
+			if (kind == COLLECTION) {
+				appendCollection(sb, (Collection<?>) o);
+			} else if (kind == MAP) {
+				appendMap(sb, (Map<?, ?>) o);
+			} else {
+				String s = o.toString();
+				sb.append(s, 0, Math.min(s.length(), remaining(sb)));
+			}
+		}
+	}
+
+	/** Same format as {@link AbstractCollection#toString()}. */
+	private void appendCollection(StringBuilder sb, Collection<?> c) {
+		sb.append('[');
+		for (Iterator<?> it = c.iterator(); it.hasNext() && remaining(sb) > 0;) {
+			Object e = it.next();
+			append(sb, e == c ? "(this Collection)" : e);
+			if (it.hasNext()) {
+				sb.append(", ");
+			}
+		}
+		sb.append(']');
+	}
+
+	/** Same format as {@link AbstractMap#toString()}. */
+	private void appendMap(StringBuilder sb, Map<?, ?> m) {
+		sb.append('{');
+		for (Iterator<? extends Map.Entry<?, ?>> it = m.entrySet().iterator(); it.hasNext() && remaining(sb) > 0;) {
+			Map.Entry<?, ?> e = it.next();
+			append(sb, e.getKey() == m ? "(this Map)" : e.getKey());
+			sb.append('=');
+			append(sb, e.getValue() == m ? "(this Map)" : e.getValue());
+			if (it.hasNext()) {
+				sb.append(", ");
+			}
+		}
+		sb.append('}');
+	}
+
+	private void appendFormattable(StringBuilder sb, Formattable formattable) {
+		Appendable bounded = new Appendable() {
+			@Override
+			public Appendable append(CharSequence csq) {
+				return append(csq, 0, csq.length());
+			}
+
+			@Override
+			public Appendable append(CharSequence csq, int start, int end) {
+				int n = Math.min(end - start, remaining(sb));
+				sb.append(csq, start, start + n);
+				if (n < end - start) {
+					throw new LimitReachedException();
+				}
+				return this;
+			}
+
+			@Override
+			public Appendable append(char c) {
+				if (remaining(sb) == 0) {
+					throw new LimitReachedException();
+				}
+				sb.append(c);
+				return this;
+			}
+		};
+		try {
+			formattable.formatTo(new Formatter(bounded), 0, -1, -1);
+		} catch (LimitReachedException e) {
+			// expected
+		}
+	}
+
+	/** @return How many more characters are needed to exceed the limit */
+	private int remaining(StringBuilder sb) {
+		return Math.max(0, maxLength + 1 - sb.length());
+	}
+}
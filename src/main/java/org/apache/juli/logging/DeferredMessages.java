@@ -0,0 +1,107 @@
+package org.apache.juli.logging;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Decides which non-String messages are passed to SLF4J as parameter of a
+ * <code>"{}"</code> format instead of being rendered by the bridge. The
+ * backend then calls {@code toString()} only if and when it writes the
+ * event, possibly on another thread. Messages that are not deferred are
+ * rendered at call time, which is a snapshot of their current state.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class DeferredMessages {
+	static final String DEFER_PROPERTY = "org.apache.juli.logging.defer";
+	static final String IMMUTABLE_TYPES_PROPERTY = "org.apache.juli.logging.defer.immutableTypes";
+
+	enum Mode {
+		/** Render all messages at call time. */
+		OFF,
+		/** Defer messages of immutable types only. */
+		IMMUTABLE,
+		/** Defer all messages. Only safe if messages are not modified after logging, or the backend renders synchronously. */
+		ALL
+	}
+
+	private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<>(Arrays.asList(
+			Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+			BigInteger.class, BigDecimal.class, UUID.class, URI.class, Class.class));
+
+	private final Mode mode;
+	private final Set<String> immutableTypeNames;
+	private final ClassValue<Boolean> immutable = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return IMMUTABLE_TYPES.contains(type)
+					|| type.isEnum()
+					|| (type.getSuperclass() != null && type.getSuperclass().isEnum())
+					|| type.getName().startsWith("java.time.")
+					|| immutableTypeNames.contains(type.getName());
+		}
+	};
+
+	DeferredMessages(Mode mode, Set<String> immutableTypeNames) {
+		this.mode = mode;
+		this.immutableTypeNames = Collections.unmodifiableSet(immutableTypeNames);
+	}
+
+	/**
+	 * @return The configured instance, or <code>null</code> if messages are
+	 *         not deferred
+	 */
+	static DeferredMessages fromConfig() {
+		String modeName = LogFactory.getConfigValue(DEFER_PROPERTY, Mode.OFF.name());
+		Mode mode;
+		try {
+			mode = Mode.valueOf(modeName.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new LogConfigurationException("Invalid value for " + DEFER_PROPERTY + ": " + modeName, e);
+		}
+		if (mode == Mode.OFF) {
+			return null;
+		}
+		return new DeferredMessages(mode, immutableTypeNamesFromConfig());
+	}
+
+	/**
+	 * @return An instance that only tells immutable messages apart, for
+	 *         other components that keep messages for later
+	 */
+	static DeferredMessages immutableFromConfig() {
+		return new DeferredMessages(Mode.IMMUTABLE, immutableTypeNamesFromConfig());
+	}
+
+	private static Set<String> immutableTypeNamesFromConfig() {
+		Set<String> immutableTypeNames = new HashSet<>();
+		for (String typeName : LogFactory.getConfigValue(IMMUTABLE_TYPES_PROPERTY, "").split(",")) {
+			if (!typeName.trim().isEmpty()) {
+				immutableTypeNames.add(typeName.trim());
+			}
+		}
+		return immutableTypeNames;
+	}
+
+	/**
+	 * @return Whether the message, which must not be a String, may be
+	 *         rendered by the backend
+	 */
+	boolean canDefer(Object message) {
+		return mode == Mode.ALL || isImmutable(message);
+	}
+
+	/**
+	 * @return Whether the message is of an immutable type, regardless of
+	 *         the mode
+	 */
+	boolean isImmutable(Object message) {
+		return message == null || immutable.get(message.getClass());
+	}
+}
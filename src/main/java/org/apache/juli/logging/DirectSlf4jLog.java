@@ -1,116 +1,1031 @@
 package org.apache.juli.logging;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.NOPLogger;
+import org.slf4j.helpers.NOPLoggerFactory;
 
 /**
  * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
  */
 public class DirectSlf4jLog implements Log {
-	private Logger delegate;
+	static final String LAZY_PROPERTY = "org.apache.juli.logging.lazy";
+
+	private static final LogRegistry REGISTRY = new LogRegistry();
+
+	/** Whether SLF4J is bound to its no-operation logger factory. */
+	private static final boolean NOP_BINDING = isNopBinding();
+
+	static final int TRACE = 1;
+	static final int DEBUG = 1 << 1;
+	static final int INFO = 1 << 2;
+	static final int WARN = 1 << 3;
+	static final int ERROR = 1 << 4;
+	static final int LEVEL_COUNT = 5;
+	/** Pseudo level above all others, used as threshold to switch logging off. */
+	static final int OFF = 1 << 5;
+
+	/** Flag in the cached level mask: statistics are collected. */
+	static final int STATS = 1 << 16;
+	/** Flag in the cached level mask: TRACE or DEBUG events are sampled. */
+	static final int SAMPLED = 1 << 17;
+
+	/**
+	 * Levels discarded by the open {@link LatencyBreaker} are moved this far
+	 * up in the cached level mask, so that they are disabled but can still
+	 * be counted.
+	 */
+	static final int SHED_SHIFT = 8;
+	static final int SHED = (TRACE | DEBUG | INFO) << SHED_SHIFT;
+
+	/**
+	 * Levels that are only enabled for the {@link FlightRecorder} are
+	 * additionally set this far up in the cached level mask.
+	 */
+	static final int RECORD_SHIFT = 11;
+
+	/** Flags in the cached level mask that require processing of calls for disabled levels. */
+	private static final int FLAGS = STATS | SHED;
+
+	/**
+	 * Global configuration generation. Instances re-query the delegate for
+	 * enabled levels when this no longer matches their cached generation.
+	 */
+	private static final AtomicInteger GENERATION = new AtomicInteger();
+
+	/** Period of the {@link #housekeeping()} task. */
+	private static final long HOUSEKEEPING_INTERVAL_MILLIS = 1000;
+
+	private static volatile AsyncDispatcher asyncDispatcher;
+	private static volatile ScheduledExecutorService housekeeper;
+	private static boolean shutdownHookRegistered;
+	private static volatile boolean statsEnabled = LogFactory.getConfigValue(LogStats.STATS_PROPERTY, false);
+	private static volatile LatencyBreaker latencyBreaker;
+	private static volatile ThrowableFingerprints throwableFingerprints;
+	private static volatile ThrowableTrimmer throwableTrimmer;
+	private static volatile BoundedMessageRenderer messageRenderer;
+	private static volatile DeferredMessages deferredMessages;
+	private static volatile LogJournal logJournal;
+	/** The configuration that the breaker, the helpers and the journal were created for. */
+	private static volatile LogConfig appliedConfig;
+	private static volatile FlightRecorder flightRecorder;
+	private static volatile BinaryLogWriter binaryLogWriter;
+
+	private final String name;
+	/** Resolved on first use for lazily created instances. */
+	private volatile Logger delegate;
+	private final AsyncDispatcher dispatcher;
+	private volatile LoggerStats stats;
+	/**
+	 * The configuration that the rate limiters, the aggregator and the
+	 * binary log were resolved in, <code>null</code> if they are set
+	 * directly.
+	 */
+	private volatile LogConfig config;
+	/** Per level index. */
+	private volatile RateLimiter[] rateLimiters;
+	/** Sampling rates per level index, resolved with the levels. */
+	private int[] sampleRates;
+	private volatile MessageAggregator aggregator;
+	private volatile BinaryLogWriter binaryLog;
+
+	/**
+	 * Cached state: configuration generation in the upper 32 bits, bit mask
+	 * of enabled levels in the lower 32 bits. Kept in a single volatile
+	 * field so that racing threads never see a generation paired with a
+	 * stale mask; a plain long could be written in two halves.
+	 */
+	private volatile long levels;
+
+	static {
+		LogStats.registerMBean(new LogStats(REGISTRY), LogStatsMBean.class, LogStats.OBJECT_NAME);
+		LogStats.registerMBean(LevelOverrides.INSTANCE, LevelOverridesMBean.class, LevelOverrides.OBJECT_NAME);
+		LogStats.registerMBean(SamplingRates.INSTANCE, SamplingRatesMBean.class, SamplingRates.OBJECT_NAME);
+		LogStats.registerMBean(ThreadLevels.INSTANCE, ThreadLevelsMBean.class, ThreadLevels.OBJECT_NAME);
+	}
 
 	public static Log getInstance(String name) {
+		if (NOP_BINDING) {
+			return NoOpLog.INSTANCE;
+		}
+		return REGISTRY.getLog(name, DirectSlf4jLog::newInstance);
+	}
+
+	private static boolean isNopBinding() {
+		try {
+			return LoggerFactory.getILoggerFactory() instanceof NOPLoggerFactory;
+		} catch (Throwable e) {
+			// reported by getLogger() in newInstance()
+			return false;
+		}
+	}
+
+	private static Log newInstance(String name) {
+		LogConfig config = LogConfig.get();
+		Logger delegate = null;
+		if (!config.lazy) {
+			delegate = getLogger(name);
+			if (delegate instanceof NOPLogger) {
+				return NoOpLog.INSTANCE;
+			}
+		}
+		AsyncDispatcher dispatcher = null;
+		if (config.async) {
+			dispatcher = getAsyncDispatcher();
+		}
+		if (appliedConfig != config) {
+			applyConfig(config);
+		}
+		if (flightRecorder == null && config.flightRecorder) {
+			initFlightRecorder();
+		}
+		DirectSlf4jLog log;
+		if (config.minLevel == OFF) {
+			return NoOpLog.INSTANCE;
+		} else if (config.minLevel != 0) {
+			log = MinLevelLogs.create(config.minLevel, name, delegate, dispatcher);
+		} else {
+			log = new DirectSlf4jLog(name, delegate, dispatcher);
+		}
+		log.configure(config);
+		return log;
+	}
+
+	private static Logger getLogger(String name) {
 		try {
-			return new DirectSlf4jLog(LoggerFactory.getLogger(name));
+			return LoggerFactory.getLogger(name);
 		} catch (Throwable e) {
 			throw new LogConfigurationException("Error creating SLF4J logger", e);
 		}
 	}
 
+	private static AsyncDispatcher getAsyncDispatcher() {
+		AsyncDispatcher dispatcher = asyncDispatcher;
+		if (dispatcher == null) {
+			synchronized (DirectSlf4jLog.class) {
+				dispatcher = asyncDispatcher;
+				if (dispatcher == null) {
+					dispatcher = AsyncDispatcher.fromConfig();
+					asyncDispatcher = dispatcher;
+					registerShutdownHook();
+				}
+			}
+		}
+		return dispatcher;
+	}
+
+	private static BinaryLogWriter getBinaryLogWriter() {
+		BinaryLogWriter writer = binaryLogWriter;
+		if (writer == null) {
+			synchronized (DirectSlf4jLog.class) {
+				writer = binaryLogWriter;
+				if (writer == null) {
+					writer = BinaryLogWriter.fromConfig(DirectSlf4jLog::runInHousekeeping);
+					binaryLogWriter = writer;
+					registerShutdownHook();
+					startHousekeeping();
+				}
+			}
+		}
+		return writer;
+	}
+
+	private static synchronized void registerShutdownHook() {
+		if (!shutdownHookRegistered) {
+			Runtime.getRuntime().addShutdownHook(new Thread(DirectSlf4jLog::shutdown, "tomcat-juli-slf4j-shutdown"));
+			shutdownHookRegistered = true;
+		}
+	}
+
+	private static void shutdown() {
+		stopHousekeeping();
+		LatencyBreaker breaker = latencyBreaker;
+		if (breaker != null) {
+			breaker.reportNotices();
+		}
+		shutdownAsyncDispatcher();
+		closeBinaryLogWriter();
+	}
+
+	/**
+	 * Start the periodic {@link #housekeeping()} task, if not yet running.
+	 */
+	private static synchronized void startHousekeeping() {
+		if (housekeeper == null) {
+			housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "tomcat-juli-slf4j-housekeeping");
+				thread.setDaemon(true);
+				// do not pin the class loader of the web application that created the first log
+				thread.setContextClassLoader(DirectSlf4jLog.class.getClassLoader());
+				return thread;
+			});
+			housekeeper.scheduleWithFixedDelay(DirectSlf4jLog::housekeeping,
+					HOUSEKEEPING_INTERVAL_MILLIS, HOUSEKEEPING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Run a task on the housekeeping thread, or on the calling thread if
+	 * housekeeping is not running.
+	 */
+	private static void runInHousekeeping(Runnable task) {
+		ScheduledExecutorService housekeeper = DirectSlf4jLog.housekeeper;
+		if (housekeeper != null) {
+			try {
+				housekeeper.execute(task);
+				return;
+			} catch (RejectedExecutionException e) {
+				// stopped concurrently
+			}
+		}
+		task.run();
+	}
+
+	private static synchronized void stopHousekeeping() {
+		if (housekeeper != null) {
+			housekeeper.shutdownNow();
+			housekeeper = null;
+		}
+	}
+
+	/**
+	 * Write output that is due without a further event, like buffered
+	 * binary log events, latency breaker state changes and the reports of suppressed events of all cached
+	 * instances.
+	 */
+	private static void housekeeping() {
+		try {
+			long now = System.nanoTime();
+			BinaryLogWriter writer = binaryLogWriter;
+			if (writer != null) {
+				writer.flushIfDue(now);
+			}
+			LatencyBreaker breaker = latencyBreaker;
+			if (breaker != null) {
+				breaker.reportNotices();
+			}
+			REGISTRY.forEach(log -> {
+				if (log instanceof DirectSlf4jLog) {
+					((DirectSlf4jLog) log).housekeeping(now);
+				}
+			});
+		} catch (RuntimeException e) {
+			// an exception would cancel the periodic task
+			System.err.println("Error in logging housekeeping: " + e);
+		}
+	}
+
+	/**
+	 * Create or drop the shared helpers of the features in the given
+	 * configuration. Helpers without state are replaced, so that changed
+	 * settings apply. The latency breaker is kept while it stays enabled,
+	 * and the journal while its file stays the same. Helpers are never
+	 * dropped on release, as instances for other class loaders still use
+	 * them.
+	 */
+	private static synchronized void applyConfig(LogConfig config) {
+		if (appliedConfig == config) {
+			return;
+		}
+		if (config.latencyBreaker) {
+			if (latencyBreaker == null) {
+				latencyBreaker = LatencyBreaker.fromConfig();
+			}
+			// stopped on release
+			startHousekeeping();
+		} else if (latencyBreaker != null) {
+			latencyBreaker = null;
+			// stop shedding in existing instances
+			refreshLevels();
+		}
+		throwableFingerprints = config.throwableFingerprints ? ThrowableFingerprints.fromConfig() : null;
+		throwableTrimmer = config.throwableTrimmer ? ThrowableTrimmer.fromConfig() : null;
+		messageRenderer = config.messageRenderer ? BoundedMessageRenderer.fromConfig() : null;
+		deferredMessages = config.deferredMessages ? DeferredMessages.fromConfig() : null;
+		if (config.logJournal == null) {
+			logJournal = null;
+		} else if (logJournal == null || !logJournal.writesTo(config.logJournal)) {
+			logJournal = LogJournal.fromConfig();
+		}
+		appliedConfig = config;
+	}
+
+	private static synchronized void initFlightRecorder() {
+		if (flightRecorder == null) {
+			flightRecorder = FlightRecorder.fromConfig();
+			// enable the recorded levels in existing instances
+			refreshLevels();
+		}
+	}
+
+	private static synchronized void shutdownAsyncDispatcher() {
+		if (asyncDispatcher != null) {
+			asyncDispatcher.shutdown();
+			asyncDispatcher = null;
+		}
+	}
+
+	private static synchronized void closeBinaryLogWriter() {
+		if (binaryLogWriter != null) {
+			binaryLogWriter.close();
+			binaryLogWriter = null;
+		}
+	}
+
+	/**
+	 * Release all cached instances, regardless of the class loader they
+	 * were created for. Pending asynchronous events are written before this
+	 * method returns, unless this takes longer than the configured shutdown
+	 * timeout.
+	 */
 	public static void release() {
+		REGISTRY.forEach(DirectSlf4jLog::flushPending);
+		REGISTRY.releaseAll();
+		LogConfig.invalidate();
+		shutdown();
+		FlightRecorder recorder = flightRecorder;
+		if (recorder != null) {
+			recorder.clear();
+			flightRecorder = null;
+			// disable the recorded levels in instances that are still in use
+			refreshLevels();
+		}
+	}
+
+	/**
+	 * Release all cached instances that were created while the given class
+	 * loader was the context class loader.
+	 */
+	public static void release(ClassLoader classLoader) {
+		REGISTRY.release(classLoader).forEach(DirectSlf4jLog::flushPending);
+		LogConfig.invalidate();
+		FlightRecorder recorder = flightRecorder;
+		if (recorder != null) {
+			// may reference loggers and Throwables of the web application
+			recorder.clear();
+		}
+	}
+
+	private static void flushPending(Log log) {
+		if (log instanceof DirectSlf4jLog) {
+			((DirectSlf4jLog) log).flushPending();
+		}
+	}
+
+	/**
+	 * @return The number of {@link #getInstance(String)} calls that were
+	 *         served from the cache
+	 */
+	public static long getCacheHits() {
+		return REGISTRY.getHits();
+	}
+
+	/**
+	 * @return The number of {@link #getInstance(String)} calls that had to
+	 *         create a new instance
+	 */
+	public static long getCacheMisses() {
+		return REGISTRY.getMisses();
+	}
+
+	/**
+	 * @return The number of currently cached instances
+	 */
+	public static int getCacheSize() {
+		return REGISTRY.size();
+	}
+
+	/**
+	 * Invalidate the cached enabled levels of all instances. Must be called
+	 * after the SLF4J backend has been reconfigured.
+	 */
+	public static void refreshLevels() {
+		GENERATION.incrementAndGet();
+	}
+
+	/**
+	 * Parse a level name. FATAL is mapped to ERROR.
+	 */
+	static int toLevel(String name) {
+		switch (name == null ? "" : name.trim().toUpperCase()) {
+		case "TRACE":
+			return TRACE;
+		case "DEBUG":
+			return DEBUG;
+		case "INFO":
+			return INFO;
+		case "WARN":
+			return WARN;
+		case "ERROR":
+		case "FATAL":
+			return ERROR;
+		case "OFF":
+			return OFF;
+		default:
+			throw new IllegalArgumentException("Invalid level: " + name);
+		}
+	}
+
+	static String toLevelName(int level) {
+		switch (level) {
+		case TRACE:
+			return "TRACE";
+		case DEBUG:
+			return "DEBUG";
+		case INFO:
+			return "INFO";
+		case WARN:
+			return "WARN";
+		case ERROR:
+			return "ERROR";
+		case OFF:
+			return "OFF";
+		default:
+			throw new IllegalArgumentException("Invalid level: " + level);
+		}
+	}
+
+	static boolean isStatsEnabled() {
+		return statsEnabled;
+	}
+
+	static void setStatsEnabled(boolean statsEnabled) {
+		DirectSlf4jLog.statsEnabled = statsEnabled;
+		refreshLevels();
+	}
+
+	static synchronized long getAsyncDroppedCount() {
+		if (asyncDispatcher == null) {
+			return 0;
+		}
+		return asyncDispatcher.getDroppedCount();
 	}
 
 	public DirectSlf4jLog(Logger delegate) {
+		this(delegate.getName(), delegate, null);
+	}
+
+	/**
+	 * @param delegate The SLF4J logger, or <code>null</code> to resolve it
+	 *        on first use
+	 */
+	DirectSlf4jLog(String name, Logger delegate, AsyncDispatcher dispatcher) {
+		this.name = name;
 		this.delegate = delegate;
+		this.dispatcher = dispatcher;
+		if (delegate != null) {
+			this.levels = loadLevels(GENERATION.get());
+		} else {
+			// generation that never matches, levels are loaded on first use
+			this.levels = (long) (GENERATION.get() - 1) << 32;
+		}
+	}
+
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * Resolve the rate limiters, the aggregator and the binary log of this
+	 * instance in the given configuration. Output pending in the replaced
+	 * ones is written.
+	 */
+	private synchronized void configure(LogConfig config) {
+		if (this.config == config) {
+			return;
+		}
+		RateLimiter[] rateLimiters = config.rateLimits == null ? null : config.rateLimits.createLimiters(name);
+		MessageAggregator aggregator = config.newAggregator(name);
+		if (rateLimiters != null || aggregator != null) {
+			startHousekeeping();
+		}
+		RateLimiter[] oldRateLimiters = this.rateLimiters;
+		MessageAggregator oldAggregator = this.aggregator;
+		this.rateLimiters = rateLimiters;
+		this.aggregator = aggregator;
+		this.binaryLog = config.isBinaryLogged(name) ? getBinaryLogWriter() : null;
+		this.config = config;
+		if (oldAggregator != null) {
+			oldAggregator.flush((summary, level) -> emit(level, summary, null));
+		}
+		reportSuppressed(oldRateLimiters, System.nanoTime(), true);
+	}
+
+	void setRateLimiters(RateLimiter[] rateLimiters) {
+		this.rateLimiters = rateLimiters;
+	}
+
+	void setAggregator(MessageAggregator aggregator) {
+		this.aggregator = aggregator;
+	}
+
+	void setBinaryLog(BinaryLogWriter binaryLog) {
+		this.binaryLog = binaryLog;
+	}
+
+	/**
+	 * Write an event from the {@link FlightRecorder}, regardless of the
+	 * cached levels.
+	 */
+	void writeRecorded(int level, String message, Throwable t) {
+		emit(level, message, trim(t));
+	}
+
+	/**
+	 * Write output that is due without a further event.
+	 */
+	void housekeeping(long now) {
+		reportSuppressed(rateLimiters, now, false);
+		MessageAggregator aggregator = this.aggregator;
+		if (aggregator != null && aggregator.endInterval(now)) {
+			flushAggregator();
+		}
+	}
+
+	/**
+	 * Write all pending output, whether it is due or not.
+	 */
+	void flushPending() {
+		flushAggregator();
+		reportSuppressed(rateLimiters, System.nanoTime(), true);
+	}
+
+	private void reportSuppressed(RateLimiter[] rateLimiters, long now, boolean force) {
+		if (rateLimiters != null) {
+			for (int i = 0; i < rateLimiters.length; i++) {
+				RateLimiter rateLimiter = rateLimiters[i];
+				if (rateLimiter != null) {
+					reportSuppressed(1 << i, force ? rateLimiter.takeSuppressed() : rateLimiter.takeSuppressed(now));
+				}
+			}
+		}
+	}
+
+	private void reportSuppressed(int level, long suppressed) {
+		if (suppressed > 0) {
+			emit(level, "Suppressed " + suppressed + " " + toLevelName(level) + " messages from " + name, null);
+		}
+	}
+
+	/**
+	 * Emit the summaries of the current aggregation interval, if this
+	 * instance aggregates its events.
+	 */
+	void flushAggregator() {
+		MessageAggregator aggregator = this.aggregator;
+		if (aggregator != null) {
+			aggregator.flush((summary, level) -> emit(level, summary, null));
+		}
+	}
+
+	private Logger delegate() {
+		Logger delegate = this.delegate;
+		if (delegate == null) {
+			// racing threads get the same logger from SLF4J
+			delegate = getLogger(name);
+			this.delegate = delegate;
+		}
+		return delegate;
+	}
+
+	/**
+	 * @return The statistics of this instance, or <code>null</code> if none
+	 *         have been collected yet
+	 */
+	LoggerStats getStats() {
+		return stats;
+	}
+
+	private int levels() {
+		long levels = this.levels;
+		int generation = GENERATION.get();
+		if ((int) (levels >>> 32) != generation) {
+			levels = loadLevels(generation);
+			this.levels = levels;
+		}
+		return (int) levels;
+	}
+
+	private long loadLevels(int generation) {
+		Logger delegate = delegate();
+		int mask = 0;
+		if (delegate.isTraceEnabled()) {
+			mask |= TRACE;
+		}
+		if (delegate.isDebugEnabled()) {
+			mask |= DEBUG;
+		}
+		if (delegate.isInfoEnabled()) {
+			mask |= INFO;
+		}
+		if (delegate.isWarnEnabled()) {
+			mask |= WARN;
+		}
+		if (delegate.isErrorEnabled()) {
+			mask |= ERROR;
+		}
+		int minLevel = LevelOverrides.INSTANCE.resolve(name);
+		if (minLevel != 0) {
+			// clear all level bits below the minimum level
+			mask &= -minLevel;
+		}
+		LogConfig config = this.config;
+		try {
+			// applies changed sampling rules before they are resolved
+			LogConfig current = LogConfig.get();
+			if (config != null && config != current) {
+				configure(current);
+			}
+		} catch (LogConfigurationException e) {
+			// keep the previous configuration, level checks must not fail
+			System.err.println("Error reading logging configuration: " + e);
+		}
+		int[] sampleRates = SamplingRates.INSTANCE.resolve(name);
+		this.sampleRates = sampleRates;
+		if (sampleRates != null) {
+			mask |= SAMPLED;
+		}
+		int recorded = 0;
+		FlightRecorder recorder = flightRecorder;
+		if (recorder != null) {
+			recorded = recorder.getLevels() & ~mask;
+			mask |= recorded | (recorded << RECORD_SHIFT);
+		}
+		LatencyBreaker breaker = latencyBreaker;
+		if (breaker != null && breaker.isOpen()) {
+			int shed = mask & (TRACE | DEBUG | INFO) & ~recorded;
+			mask = (mask & ~shed) | (shed << SHED_SHIFT);
+		}
+		if (statsEnabled) {
+			mask |= STATS;
+		}
+		return ((long) generation << 32) | (mask & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Log a message for which either the level is enabled or a flag
+	 * requires further processing. This is the only place where messages
+	 * are rendered.
+	 */
+	private void log(int levels, int level, Object message, Throwable t) {
+		LoggerStats stats = null;
+		if ((levels & STATS) != 0) {
+			stats = getOrCreateStats();
+			stats.called(level);
+		}
+		if ((levels & level) == 0) {
+			if ((levels & (level << SHED_SHIFT)) != 0) {
+				shed(level);
+			}
+			if (level <= DEBUG && ThreadLevels.isActive() && ThreadLevels.isEnabled(level)) {
+				logForThread(levels, level, message, t);
+			}
+			return;
+		}
+		if ((levels & (level << RECORD_SHIFT)) != 0) {
+			FlightRecorder recorder = flightRecorder;
+			if (recorder != null) {
+				recorder.record(this, level, message, t);
+			}
+			return;
+		}
+		if (level == ERROR) {
+			FlightRecorder recorder = flightRecorder;
+			if (recorder != null) {
+				recorder.flush(ERROR);
+			}
+		}
+		MessageAggregator aggregator = this.aggregator;
+		if (aggregator != null && t == null && MessageAggregator.isAggregated(level)) {
+			if (aggregator.add(level, message, System.nanoTime())) {
+				flushAggregator();
+			}
+			return;
+		}
+		int sampleRate = 0;
+		if ((levels & SAMPLED) != 0) {
+			int[] sampleRates = this.sampleRates;
+			if (sampleRates != null) {
+				sampleRate = SamplingRates.rate(sampleRates, level);
+				if (!SamplingRates.sample(sampleRate)) {
+					return;
+				}
+			}
+		}
+		RateLimiter[] rateLimiters = this.rateLimiters;
+		if (rateLimiters != null && !acquire(rateLimiters[LoggerStats.levelIndex(level)], level)) {
+			return;
+		}
+		BoundedMessageRenderer renderer = messageRenderer;
+		ThrowableFingerprints fingerprints = throwableFingerprints;
+		if (!(message instanceof String) && stats == null && renderer == null && sampleRate == 0 && (t == null || fingerprints == null)) {
+			DeferredMessages deferred = deferredMessages;
+			if (deferred != null && deferred.canDefer(message)) {
+				emit(level, message, trim(t));
+				return;
+			}
+		}
+		String renderedMessage = renderer == null ? String.valueOf(message) : renderer.render(message);
+		if (sampleRate > 1) {
+			// lets downstream tooling extrapolate the actual number of events
+			renderedMessage += " [sampled 1/" + sampleRate + "]";
+		}
+		if (t != null && fingerprints != null) {
+			ThrowableFingerprints.Fingerprint fingerprint = fingerprints.get(t, System.nanoTime());
+			int occurrence = fingerprint.nextOccurrence();
+			if (occurrence == 1) {
+				renderedMessage += " [exception " + fingerprint.getId() + "]";
+			} else {
+				renderedMessage += " [exception " + fingerprint.getId() + " occurrence " + occurrence + ", stack trace omitted: " + t + "]";
+				t = null;
+			}
+		}
+		if (stats != null) {
+			stats.emitted(level, renderedMessage.length());
+		}
+		emit(level, renderedMessage, trim(t));
+	}
+
+	/**
+	 * Log an event of a level that is only enabled for the current thread.
+	 * The backend would discard it, so it is written at the lowest level
+	 * enabled in the backend, prefixed with its level.
+	 */
+	private void logForThread(int levels, int level, Object message, Throwable t) {
+		int enabled = levels & (TRACE | DEBUG | INFO | WARN | ERROR) & ~(levels >>> RECORD_SHIFT);
+		if (enabled != 0) {
+			emit(Integer.lowestOneBit(enabled), "[" + toLevelName(level) + "] " + message, trim(t));
+		}
+	}
+
+	private static Throwable trim(Throwable t) {
+		ThrowableTrimmer trimmer = throwableTrimmer;
+		if (t != null && trimmer != null) {
+			return trimmer.trim(t);
+		}
+		return t;
+	}
+
+	/**
+	 * @return Whether the event is within the rate limit. Reports the
+	 *         events suppressed so far when admitting an event, otherwise
+	 *         they are reported by {@link #housekeeping(long)}.
+	 */
+	private boolean acquire(RateLimiter rateLimiter, int level) {
+		if (rateLimiter == null) {
+			return true;
+		}
+		long now = System.nanoTime();
+		if (!rateLimiter.tryAcquire(now)) {
+			return false;
+		}
+		reportSuppressed(level, rateLimiter.takeSuppressed(now));
+		return true;
+	}
+
+	private LoggerStats getOrCreateStats() {
+		LoggerStats stats = this.stats;
+		if (stats == null) {
+			synchronized (this) {
+				stats = this.stats;
+				if (stats == null) {
+					stats = new LoggerStats();
+					this.stats = stats;
+				}
+			}
+		}
+		return stats;
+	}
+
+	private static void shed(int level) {
+		LatencyBreaker breaker = latencyBreaker;
+		if (breaker != null) {
+			breaker.shed(level, System.nanoTime());
+		}
+	}
+
+	/**
+	 * @param message The rendered message, or a message to be rendered by
+	 *        the backend
+	 */
+	private void emit(int level, Object message, Throwable t) {
+		LogJournal journal = logJournal;
+		if (journal != null) {
+			journal.append(name, level, String.valueOf(message), t);
+			if (journal.isExclusive()) {
+				return;
+			}
+		}
+		BinaryLogWriter binaryLog = this.binaryLog;
+		// closed on release, then write to SLF4J instead
+		if (binaryLog != null && binaryLog.write(name, level, String.valueOf(message), t)) {
+			return;
+		}
+		if (dispatcher == null) {
+			write(level, message, t);
+		} else if (level >= ERROR) {
+			dispatcher.flush();
+			write(level, message, t);
+		} else {
+			dispatcher.publish(this, level, message, t);
+		}
+	}
+
+	/**
+	 * Write to the delegate without checking the cached levels.
+	 */
+	void write(int level, Object message, Throwable t) {
+		LatencyBreaker breaker = latencyBreaker;
+		if (breaker != null && breaker.shouldSample()) {
+			long start = System.nanoTime();
+			writeToDelegate(level, message, t);
+			long end = System.nanoTime();
+			breaker.record(end - start, end);
+		} else {
+			writeToDelegate(level, message, t);
+		}
+	}
+
+	private void writeToDelegate(int level, Object message, Throwable t) {
+		if (!(message instanceof String)) {
+			writeDeferred(level, message, t);
+			return;
+		}
+		Logger delegate = delegate();
+		String s = (String) message;
+		switch (level) {
+		case TRACE:
+			delegate.trace(s, t);
+			break;
+		case DEBUG:
+			delegate.debug(s, t);
+			break;
+		case INFO:
+			delegate.info(s, t);
+			break;
+		case WARN:
+			delegate.warn(s, t);
+			break;
+		default:
+			delegate.error(s, t);
+			break;
+		}
+	}
+
+	/**
+	 * Write a message to be rendered by the backend. A trailing Throwable
+	 * argument is treated as exception by SLF4J.
+	 */
+	private void writeDeferred(int level, Object message, Throwable t) {
+		Logger delegate = delegate();
+		switch (level) {
+		case TRACE:
+			delegate.trace("{}", message, t);
+			break;
+		case DEBUG:
+			delegate.debug("{}", message, t);
+			break;
+		case INFO:
+			delegate.info("{}", message, t);
+			break;
+		case WARN:
+			delegate.warn("{}", message, t);
+			break;
+		default:
+			delegate.error("{}", message, t);
+			break;
+		}
 	}
 
 	@Override
 	public boolean isDebugEnabled() {
-		return delegate.isDebugEnabled();
+		return (levels() & DEBUG) != 0 || ThreadLevels.isActive() && ThreadLevels.isEnabled(DEBUG);
 	}
 
 	@Override
 	public boolean isErrorEnabled() {
-		return delegate.isErrorEnabled();
+		return (levels() & ERROR) != 0;
 	}
 
 	@Override
 	public boolean isFatalEnabled() {
-		return delegate.isErrorEnabled();
+		return (levels() & ERROR) != 0;
 	}
 
 	@Override
 	public boolean isInfoEnabled() {
-		return delegate.isInfoEnabled();
+		return (levels() & INFO) != 0;
 	}
 
 	@Override
 	public boolean isTraceEnabled() {
-		return delegate.isTraceEnabled();
+		return (levels() & TRACE) != 0 || ThreadLevels.isActive() && ThreadLevels.isEnabled(TRACE);
 	}
 
 	@Override
 	public boolean isWarnEnabled() {
-		return delegate.isWarnEnabled();
+		return (levels() & WARN) != 0;
 	}
 
 	@Override
 	public void trace(Object message) {
-		delegate.trace(String.valueOf(message));
+		int levels = levels();
+		if ((levels & (TRACE | FLAGS)) != 0 || ThreadLevels.isActive()) {
+			log(levels, TRACE, message, null);
+		}
 	}
 
 	@Override
 	public void trace(Object message, Throwable t) {
-		delegate.trace(String.valueOf(message), t);
+		int levels = levels();
+		if ((levels & (TRACE | FLAGS)) != 0 || ThreadLevels.isActive()) {
+			log(levels, TRACE, message, t);
+		}
 	}
 
 	@Override
 	public void debug(Object message) {
-		delegate.debug(String.valueOf(message));
+		int levels = levels();
+		if ((levels & (DEBUG | FLAGS)) != 0 || ThreadLevels.isActive()) {
+			log(levels, DEBUG, message, null);
+		}
 	}
 
 	@Override
 	public void debug(Object message, Throwable t) {
-		delegate.debug(String.valueOf(message), t);
+		int levels = levels();
+		if ((levels & (DEBUG | FLAGS)) != 0 || ThreadLevels.isActive()) {
+			log(levels, DEBUG, message, t);
+		}
 	}
 
 	@Override
 	public void info(Object message) {
-		delegate.info(String.valueOf(message));
+		int levels = levels();
+		if ((levels & (INFO | FLAGS)) != 0) {
+			log(levels, INFO, message, null);
+		}
 	}
 
 	@Override
 	public void info(Object message, Throwable t) {
-		delegate.info(String.valueOf(message), t);
+		int levels = levels();
+		if ((levels & (INFO | FLAGS)) != 0) {
+			log(levels, INFO, message, t);
+		}
 	}
 
 	@Override
 	public void warn(Object message) {
-		delegate.warn(String.valueOf(message));
+		int levels = levels();
+		if ((levels & (WARN | FLAGS)) != 0) {
+			log(levels, WARN, message, null);
+		}
 	}
 
 	@Override
 	public void warn(Object message, Throwable t) {
-		delegate.warn(String.valueOf(message), t);
+		int levels = levels();
+		if ((levels & (WARN | FLAGS)) != 0) {
+			log(levels, WARN, message, t);
+		}
 	}
 
 	@Override
 	public void error(Object message) {
-		delegate.error(String.valueOf(message));
+		int levels = levels();
+		if ((levels & (ERROR | FLAGS)) != 0) {
+			log(levels, ERROR, message, null);
+		}
 	}
 
 	@Override
 	public void error(Object message, Throwable t) {
-		delegate.error(String.valueOf(message), t);
+		int levels = levels();
+		if ((levels & (ERROR | FLAGS)) != 0) {
+			log(levels, ERROR, message, t);
+		}
 	}
 
 	@Override
 	public void fatal(Object message) {
-		delegate.error(String.valueOf(message));
+		int levels = levels();
+		if ((levels & (ERROR | FLAGS)) != 0) {
+			log(levels, ERROR, message, null);
+		}
 	}
 
 	@Override
 	public void fatal(Object message, Throwable t) {
-		delegate.error(String.valueOf(message), t);
+		int levels = levels();
+		if ((levels & (ERROR | FLAGS)) != 0) {
+			log(levels, ERROR, message, t);
+		}
 	}
 }
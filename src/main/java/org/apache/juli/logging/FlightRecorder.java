@@ -0,0 +1,201 @@
+package org.apache.juli.logging;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Records events of levels that are disabled in the backend, e.g. DEBUG
+ * and TRACE, in a bounded ring per thread instead of discarding them. When
+ * a thread logs an ERROR, the events recorded by that thread are written
+ * ahead of it, so failing requests come with their detailed context.
+ * <p>
+ * Recorded levels are reported as enabled, so that guarded logging
+ * statements pass their messages. Recording stores references in
+ * preallocated arrays. Messages that {@link DeferredMessages} does not
+ * consider immutable are rendered when recorded, so that they are written
+ * with their state at that time, e.g. recycled request objects, and no
+ * objects of web applications are kept. Recorded events are written at the
+ * level of the ERROR event, as the backend would discard them at their
+ * original level. The original level and time are prefixed to the
+ * message, e.g. {@code [DEBUG 2021-10-05T09:12:01.123Z] ...}.
+ * <p>
+ * Rings of all threads are cleared on release, as they may reference
+ * loggers and Throwables of undeployed web applications.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class FlightRecorder {
+	/** Number of events recorded per thread, 0 disables recording. */
+	static final String SIZE_PROPERTY = "org.apache.juli.logging.flightRecorder.size";
+	/** Comma separated levels to record, if disabled in the backend. */
+	static final String LEVELS_PROPERTY = "org.apache.juli.logging.flightRecorder.levels";
+
+	private static final String DEFAULT_LEVELS = "TRACE,DEBUG";
+
+	private final int size;
+	private final int levels;
+	private final DeferredMessages immutableMessages;
+	private final ThreadLocal<Ring> rings = new ThreadLocal<>();
+	/** Rings of all threads. Weak, so that rings of terminated threads can be collected. */
+	private final Set<Ring> allRings = Collections.newSetFromMap(new WeakHashMap<>());
+	/** Incremented on {@link #clear()}, under the lock of {@link #allRings}. */
+	private volatile int epoch;
+
+	private static final class Ring {
+		final DirectSlf4jLog[] logs;
+		final int[] levels;
+		final long[] timestamps;
+		final Object[] messages;
+		final Throwable[] throwables;
+		int next;
+		int count;
+		/** Set while the ring is written, to ignore events logged by the backend meanwhile. */
+		boolean flushing;
+		/** Epoch of the recorder that the ring was last cleared in. */
+		int epoch;
+
+		Ring(int size, int epoch) {
+			logs = new DirectSlf4jLog[size];
+			levels = new int[size];
+			timestamps = new long[size];
+			messages = new Object[size];
+			throwables = new Throwable[size];
+			this.epoch = epoch;
+		}
+
+		void clearReferences() {
+			Arrays.fill(logs, null);
+			Arrays.fill(messages, null);
+			Arrays.fill(throwables, null);
+		}
+	}
+
+	FlightRecorder(int size, int levels, DeferredMessages immutableMessages) {
+		this.size = size;
+		this.levels = levels;
+		this.immutableMessages = immutableMessages;
+	}
+
+	static FlightRecorder fromConfig() {
+		int size = LogFactory.getConfigValue(SIZE_PROPERTY, 0);
+		String levelNames = LogFactory.getConfigValue(LEVELS_PROPERTY, DEFAULT_LEVELS);
+		int levels = 0;
+		for (String levelName : levelNames.split(",")) {
+			int level;
+			try {
+				level = DirectSlf4jLog.toLevel(levelName);
+			} catch (IllegalArgumentException e) {
+				throw new LogConfigurationException("Invalid value for " + LEVELS_PROPERTY + ": " + levelNames, e);
+			}
+			if (level >= DirectSlf4jLog.ERROR) {
+				throw new LogConfigurationException("Invalid value for " + LEVELS_PROPERTY + ": " + levelNames);
+			}
+			levels |= level;
+		}
+		return new FlightRecorder(size, levels, DeferredMessages.immutableFromConfig());
+	}
+
+	/**
+	 * @return The bit mask of levels to record
+	 */
+	int getLevels() {
+		return levels;
+	}
+
+	void record(DirectSlf4jLog log, int level, Object message, Throwable t) {
+		Ring ring = rings.get();
+		if (ring == null) {
+			ring = new Ring(size, epoch);
+			rings.set(ring);
+			synchronized (allRings) {
+				allRings.add(ring);
+			}
+		} else if (ring.flushing) {
+			return;
+		} else {
+			resetIfCleared(ring);
+		}
+		if (!(message instanceof String) && !immutableMessages.isImmutable(message)) {
+			message = String.valueOf(message);
+		}
+		int index = ring.next;
+		ring.logs[index] = log;
+		ring.levels[index] = level;
+		ring.timestamps[index] = System.currentTimeMillis();
+		ring.messages[index] = message;
+		ring.throwables[index] = t;
+		ring.next = index + 1 == size ? 0 : index + 1;
+		if (ring.count < size) {
+			ring.count++;
+		}
+	}
+
+	/**
+	 * Write and forget the events recorded by the current thread.
+	 *
+	 * @param level The level to write the events at
+	 */
+	void flush(int level) {
+		Ring ring = rings.get();
+		if (ring == null || ring.flushing || resetIfCleared(ring) || ring.count == 0) {
+			return;
+		}
+		ring.flushing = true;
+		try {
+			int index = ring.next - ring.count;
+			if (index < 0) {
+				index += size;
+			}
+			for (int i = ring.count; i > 0; i--) {
+				DirectSlf4jLog log = ring.logs[index];
+				// null if cleared by another thread meanwhile
+				if (log != null) {
+					String message = "[" + DirectSlf4jLog.toLevelName(ring.levels[index]) + " " + Instant.ofEpochMilli(ring.timestamps[index])
+							+ "] " + ring.messages[index];
+					log.writeRecorded(level, message, ring.throwables[index]);
+				}
+				ring.logs[index] = null;
+				ring.messages[index] = null;
+				ring.throwables[index] = null;
+				index = index + 1 == size ? 0 : index + 1;
+			}
+			ring.count = 0;
+		} finally {
+			ring.flushing = false;
+		}
+	}
+
+	/**
+	 * Forget the events recorded by all threads. Called on release.
+	 */
+	void clear() {
+		synchronized (allRings) {
+			epoch++;
+			for (Ring ring : allRings) {
+				// owners reset their ring on next use, see resetIfCleared()
+				ring.clearReferences();
+			}
+		}
+	}
+
+	/**
+	 * Reset the ring of the current thread if it has been cleared by
+	 * another thread since its last use.
+	 *
+	 * @return Whether the ring was reset
+	 */
+	private boolean resetIfCleared(Ring ring) {
+		int epoch = this.epoch;
+		if (ring.epoch == epoch) {
+			return false;
+		}
+		ring.clearReferences();
+		ring.next = 0;
+		ring.count = 0;
+		ring.epoch = epoch;
+		return true;
+	}
+}
@@ -0,0 +1,174 @@
+package org.apache.juli.logging;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker on the latency of SLF4J backend writes. While the p99 of
+ * sampled write times over a sliding window exceeds the threshold, TRACE,
+ * DEBUG and INFO events are discarded, so that a slow backend does not
+ * block request threads for low priority logging. WARN and ERROR events
+ * are always written.
+ * <p>
+ * The window consists of a few slices of bounded sample buffers. It is
+ * evaluated whenever a slice ends, by the thread that records a sample or
+ * sheds an event at that time. When the breaker opens or closes, the
+ * cached levels of all instances are refreshed, so a closed breaker costs
+ * nothing in the level checks. Sample buffers are written without
+ * synchronization, which may occasionally lose a sample.
+ * <p>
+ * The WARN events about opening and closing are queued and written by the
+ * periodic housekeeping of {@link DirectSlf4jLog}, so the thread that
+ * notices a slow backend does not wait for it once more.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class LatencyBreaker {
+	static final String THRESHOLD_PROPERTY = "org.apache.juli.logging.breaker.thresholdMillis";
+	static final String WINDOW_PROPERTY = "org.apache.juli.logging.breaker.windowMillis";
+	static final String SAMPLE_RATE_PROPERTY = "org.apache.juli.logging.breaker.sampleRate";
+
+	private static final int DEFAULT_WINDOW_MILLIS = 1000;
+	private static final int DEFAULT_SAMPLE_RATE = 16;
+	private static final int SLICES = 4;
+	private static final int SLICE_CAPACITY = 256;
+	/** Minimum number of samples in the window to open the breaker. */
+	private static final int MIN_SAMPLES = 8;
+
+	private final long thresholdNanos;
+	private final long sliceNanos;
+	private final int sampleRate;
+	private final long[][] samples = new long[SLICES][SLICE_CAPACITY];
+	private final AtomicInteger[] sampleCounts = new AtomicInteger[SLICES];
+	private final LongAdder[] shed = new LongAdder[DirectSlf4jLog.LEVEL_COUNT];
+	private final AtomicLong nextEvaluation;
+	private final Queue<String> notices = new ConcurrentLinkedQueue<>();
+	private volatile int slice;
+	private volatile boolean open;
+	private long openedAt;
+
+	LatencyBreaker(long thresholdMillis, long windowMillis, int sampleRate) {
+		this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		this.sliceNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis) / SLICES;
+		this.sampleRate = sampleRate;
+		for (int i = 0; i < SLICES; i++) {
+			sampleCounts[i] = new AtomicInteger();
+		}
+		for (int i = 0; i < shed.length; i++) {
+			shed[i] = new LongAdder();
+		}
+		this.nextEvaluation = new AtomicLong(System.nanoTime() + sliceNanos);
+	}
+
+	static LatencyBreaker fromConfig() {
+		int thresholdMillis = LogFactory.getConfigValue(THRESHOLD_PROPERTY, 0);
+		int windowMillis = LogFactory.getConfigValue(WINDOW_PROPERTY, DEFAULT_WINDOW_MILLIS);
+		if (windowMillis < SLICES) {
+			throw new LogConfigurationException("Invalid value for " + WINDOW_PROPERTY + ": " + windowMillis);
+		}
+		int sampleRate = LogFactory.getConfigValue(SAMPLE_RATE_PROPERTY, DEFAULT_SAMPLE_RATE);
+		if (sampleRate < 1) {
+			throw new LogConfigurationException("Invalid value for " + SAMPLE_RATE_PROPERTY + ": " + sampleRate);
+		}
+		return new LatencyBreaker(thresholdMillis, windowMillis, sampleRate);
+	}
+
+	boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * @return Whether the next write should be timed. All writes are timed
+	 *         while the breaker is open, as only few remain.
+	 */
+	boolean shouldSample() {
+		return open || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+	}
+
+	void record(long latencyNanos, long now) {
+		int slice = this.slice;
+		int index = sampleCounts[slice].getAndIncrement();
+		if (index < SLICE_CAPACITY) {
+			samples[slice][index] = latencyNanos;
+		}
+		maybeEvaluate(now);
+	}
+
+	void shed(int level, long now) {
+		shed[LoggerStats.levelIndex(level)].increment();
+		maybeEvaluate(now);
+	}
+
+	/**
+	 * @return The oldest WARN message about a state change that has not yet
+	 *         been written, or <code>null</code>
+	 */
+	String pollNotice() {
+		return notices.poll();
+	}
+
+	/**
+	 * Write the queued WARN messages about state changes.
+	 */
+	void reportNotices() {
+		String notice = notices.poll();
+		while (notice != null) {
+			LoggerFactory.getLogger(LatencyBreaker.class.getName()).warn(notice);
+			notice = notices.poll();
+		}
+	}
+
+	private void maybeEvaluate(long now) {
+		long next = nextEvaluation.get();
+		if (now - next >= 0 && nextEvaluation.compareAndSet(next, now + sliceNanos)) {
+			evaluate(now);
+		}
+	}
+
+	private synchronized void evaluate(long now) {
+		long[] window = new long[SLICES * SLICE_CAPACITY];
+		int count = 0;
+		for (int i = 0; i < SLICES; i++) {
+			int sliceCount = Math.min(sampleCounts[i].get(), SLICE_CAPACITY);
+			System.arraycopy(samples[i], 0, window, count, sliceCount);
+			count += sliceCount;
+		}
+		// the oldest slice becomes the current one
+		int next = (slice + 1) % SLICES;
+		sampleCounts[next].set(0);
+		slice = next;
+
+		long p99 = 0;
+		if (count > 0) {
+			Arrays.sort(window, 0, count);
+			p99 = window[(int) Math.ceil(count * 0.99) - 1];
+		}
+
+		if (!open) {
+			if (count >= MIN_SAMPLES && p99 > thresholdNanos) {
+				open = true;
+				openedAt = now;
+				DirectSlf4jLog.refreshLevels();
+				notices.add("Logging backend is slow (p99 write latency " + TimeUnit.NANOSECONDS.toMillis(p99)
+						+ " ms exceeds " + TimeUnit.NANOSECONDS.toMillis(thresholdNanos)
+						+ " ms), discarding TRACE, DEBUG and INFO events");
+			}
+		} else if (count == 0 || p99 <= thresholdNanos) {
+			open = false;
+			DirectSlf4jLog.refreshLevels();
+			notices.add("Logging backend recovered after " + TimeUnit.NANOSECONDS.toMillis(now - openedAt)
+					+ " ms, discarded " + shed[LoggerStats.levelIndex(DirectSlf4jLog.TRACE)].sumThenReset()
+					+ " TRACE, " + shed[LoggerStats.levelIndex(DirectSlf4jLog.DEBUG)].sumThenReset()
+					+ " DEBUG and " + shed[LoggerStats.levelIndex(DirectSlf4jLog.INFO)].sumThenReset()
+					+ " INFO events");
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.apache.juli.logging;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Level overrides per logger name prefix. The overrides are kept in an
+ * immutable map and {@link NameTrie} that are replaced on every change.
+ * Changes bump the configuration generation, so each
+ * {@link DirectSlf4jLog} resolves its override once and caches the result
+ * in its level mask.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class LevelOverrides implements LevelOverridesMBean {
+	static final String OBJECT_NAME = "de.mklinger.tomcat.juli:type=LevelOverrides";
+
+	static final LevelOverrides INSTANCE = new LevelOverrides();
+
+	private volatile Map<String, Integer> overrides = Collections.emptyMap();
+	private volatile NameTrie<Integer> trie = NameTrie.empty();
+
+	private LevelOverrides() {
+	}
+
+	/**
+	 * @return The minimum level for the given logger name, or 0 if there is
+	 *         no override
+	 */
+	int resolve(String name) {
+		Integer level = trie.resolve(name);
+		return level == null ? 0 : level;
+	}
+
+	@Override
+	public String[] getOverrides() {
+		Map<String, Integer> overrides = this.overrides;
+		String[] result = new String[overrides.size()];
+		int i = 0;
+		for (Map.Entry<String, Integer> e : overrides.entrySet()) {
+			result[i++] = e.getKey() + "=" + DirectSlf4jLog.toLevelName(e.getValue());
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized void setLevel(String prefix, String level) {
+		int parsedLevel = DirectSlf4jLog.toLevel(level);
+		Map<String, Integer> newOverrides = new TreeMap<>(overrides);
+		newOverrides.put(prefix == null ? "" : prefix.trim(), parsedLevel);
+		update(newOverrides);
+	}
+
+	@Override
+	public synchronized boolean removeLevel(String prefix) {
+		Map<String, Integer> newOverrides = new TreeMap<>(overrides);
+		boolean removed = newOverrides.remove(prefix == null ? "" : prefix.trim()) != null;
+		if (removed) {
+			update(newOverrides);
+		}
+		return removed;
+	}
+
+	@Override
+	public synchronized void clear() {
+		update(Collections.emptyMap());
+	}
+
+	private void update(Map<String, Integer> newOverrides) {
+		trie = NameTrie.of(newOverrides);
+		overrides = Collections.unmodifiableMap(newOverrides);
+		DirectSlf4jLog.refreshLevels();
+	}
+}
@@ -0,0 +1,40 @@
+package org.apache.juli.logging;
+
+/**
+ * Management interface for level overrides enforced by this bridge,
+ * registered as <code>de.mklinger.tomcat.juli:type=LevelOverrides</code>.
+ * <p>
+ * An override applies to all loggers whose name equals the given prefix or
+ * starts with the prefix followed by a dot. The longest matching prefix
+ * wins. Overrides can only suppress levels that are enabled in the SLF4J
+ * backend, not enable additional ones.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public interface LevelOverridesMBean {
+	/**
+	 * @return One line <code>prefix=LEVEL</code> per override
+	 */
+	String[] getOverrides();
+
+	/**
+	 * Set the minimum level for the given logger name prefix.
+	 *
+	 * @param prefix Logger name prefix, e.g. <code>org.apache.coyote</code>,
+	 *        or an empty string for all loggers
+	 * @param level One of TRACE, DEBUG, INFO, WARN, ERROR, FATAL or OFF
+	 */
+	void setLevel(String prefix, String level);
+
+	/**
+	 * Remove the override for the given prefix.
+	 *
+	 * @return Whether there was an override for the prefix
+	 */
+	boolean removeLevel(String prefix);
+
+	/**
+	 * Remove all overrides.
+	 */
+	void clear();
+}
@@ -0,0 +1,133 @@
+package org.apache.juli.logging;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Snapshot of the configuration that {@link DirectSlf4jLog} needs to create
+ * instances. Reading and parsing all values for each new logger adds up
+ * during startup, so the snapshot is taken once per configuration
+ * generation and shared by all instances created in that generation. The
+ * generation ends when logs are released and when an attribute of the
+ * {@link LogFactory} is changed. Changed system properties are picked up
+ * after the next release.
+ * <p>
+ * Instances created from a snapshot resolve their rate limits, aggregation
+ * and binary log selection again when they refresh their levels in a
+ * later generation.
+ * <p>
+ * Taking a snapshot applies the configured sampling rules, so rates set
+ * through JMX are only replaced if the property has been changed. Ending a
+ * generation refreshes the cached levels, which takes the next snapshot, so
+ * existing instances use changed sampling rules as well.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class LogConfig {
+	private static final AtomicInteger GENERATION = new AtomicInteger();
+	private static volatile LogConfig current;
+
+	private final int generation;
+	final boolean lazy;
+	final boolean async;
+	final boolean latencyBreaker;
+	final boolean throwableFingerprints;
+	final boolean throwableTrimmer;
+	final boolean messageRenderer;
+	final boolean deferredMessages;
+	/** File of the journal, or <code>null</code>. */
+	final String logJournal;
+	final boolean flightRecorder;
+	final boolean binaryLog;
+	/** Prefixes of loggers written to the binary log, <code>null</code> for all. */
+	private final NameTrie<Boolean> binaryLoggers;
+	/** Minimum level, or 0 if not configured. */
+	final int minLevel;
+	/** May be <code>null</code>. */
+	final RateLimits rateLimits;
+	/** Prefixes of aggregated loggers, or <code>null</code>. */
+	final NameTrie<Boolean> aggregatePrefixes;
+	/** Settings for new aggregators, <code>null</code> if no logger is aggregated. */
+	final MessageAggregator aggregator;
+
+	private LogConfig(int generation) {
+		this.generation = generation;
+		this.lazy = LogFactory.getConfigValue(DirectSlf4jLog.LAZY_PROPERTY, false);
+		this.async = LogFactory.getConfigValue(AsyncDispatcher.ASYNC_PROPERTY, false);
+		this.latencyBreaker = LogFactory.getConfigValue(LatencyBreaker.THRESHOLD_PROPERTY, 0) > 0;
+		this.throwableFingerprints = LogFactory.getConfigValue(ThrowableFingerprints.WINDOW_PROPERTY, 0) > 0;
+		this.throwableTrimmer = LogFactory.getConfigValue(ThrowableTrimmer.TRIM_PROPERTY, false);
+		this.messageRenderer = LogFactory.getConfigValue(BoundedMessageRenderer.MAX_LENGTH_PROPERTY, 0) > 0;
+		this.deferredMessages = LogFactory.getConfigValue(DeferredMessages.DEFER_PROPERTY, null) != null;
+		this.logJournal = LogFactory.getConfigValue(LogJournal.JOURNAL_PROPERTY, null);
+		this.flightRecorder = LogFactory.getConfigValue(FlightRecorder.SIZE_PROPERTY, 0) > 0;
+		this.binaryLog = LogFactory.getConfigValue(BinaryLogWriter.BINARY_PROPERTY, null) != null;
+		String binaryLoggers = LogFactory.getConfigValue(BinaryLogWriter.LOGGERS_PROPERTY, null);
+		this.binaryLoggers = binaryLoggers == null ? null : NameTrie.ofPrefixes(binaryLoggers);
+		this.minLevel = parseMinLevel(LogFactory.getConfigValue(MinLevelLogs.MIN_LEVEL_PROPERTY, null));
+		this.rateLimits = RateLimits.fromConfig();
+		String aggregate = LogFactory.getConfigValue(MessageAggregator.AGGREGATE_PROPERTY, null);
+		this.aggregatePrefixes = aggregate == null ? null : NameTrie.ofPrefixes(aggregate);
+		this.aggregator = aggregate == null ? null : MessageAggregator.fromConfig();
+	}
+
+	private static int parseMinLevel(String minLevel) {
+		if (minLevel == null) {
+			return 0;
+		}
+		try {
+			return DirectSlf4jLog.toLevel(minLevel);
+		} catch (IllegalArgumentException e) {
+			throw new LogConfigurationException("Invalid value for " + MinLevelLogs.MIN_LEVEL_PROPERTY + ": " + minLevel, e);
+		}
+	}
+
+	/**
+	 * @return The snapshot of the current configuration generation
+	 */
+	static LogConfig get() {
+		LogConfig config = current;
+		if (config == null || config.generation != GENERATION.get()) {
+			config = load();
+		}
+		return config;
+	}
+
+	private static synchronized LogConfig load() {
+		int generation = GENERATION.get();
+		LogConfig config = current;
+		if (config == null || config.generation != generation) {
+			config = new LogConfig(generation);
+			SamplingRates.INSTANCE.configure(LogFactory.getConfigValue(SamplingRates.SAMPLING_PROPERTY, null));
+			current = config;
+		}
+		return config;
+	}
+
+	/**
+	 * End the current configuration generation. The next instance creation
+	 * or level refresh reads the configuration again.
+	 */
+	static void invalidate() {
+		GENERATION.incrementAndGet();
+		DirectSlf4jLog.refreshLevels();
+	}
+
+	/**
+	 * @return Whether the events of the given logger are written to the
+	 *         binary log
+	 */
+	boolean isBinaryLogged(String name) {
+		return binaryLog && (binaryLoggers == null || binaryLoggers.resolve(name) != null);
+	}
+
+	/**
+	 * @return A new aggregator if the given logger is configured for
+	 *         aggregation, <code>null</code> otherwise
+	 */
+	MessageAggregator newAggregator(String name) {
+		if (aggregatePrefixes == null || aggregatePrefixes.resolve(name) == null) {
+			return null;
+		}
+		return aggregator.copy();
+	}
+}
@@ -200,6 +200,45 @@ public class LogFactory {
 	}
 
 
+	/**
+	 * Return the value of the given configuration setting. Configuration
+	 * attributes of the factory take precedence over system properties.
+	 *
+	 * @param name Name of the attribute or system property
+	 * @param defaultValue Value to return if the setting is not present
+	 */
+	static String getConfigValue(String name, String defaultValue) {
+		Object value = singleton.getAttribute(name);
+		if (value == null) {
+			value = System.getProperty(name);
+		}
+		if (value == null) {
+			return defaultValue;
+		}
+		return value.toString();
+	}
+
+	static int getConfigValue(String name, int defaultValue) {
+		String value = getConfigValue(name, null);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new LogConfigurationException("Invalid integer value for '" + name + "': " + value, e);
+		}
+	}
+
+	static boolean getConfigValue(String name, boolean defaultValue) {
+		String value = getConfigValue(name, null);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		return Boolean.parseBoolean(value.trim());
+	}
+
+
 	/**
 	 * Return an array containing the names of all currently defined
 	 * configuration attributes.  If there are no such attributes, a zero
@@ -218,6 +257,7 @@ public class LogFactory {
 	 */
 	public void removeAttribute(String name) {
 		logConfig.remove(name);
+		LogConfig.invalidate();
 	}
 
 
@@ -232,6 +272,7 @@ public class LogFactory {
 	 */
 	public void setAttribute(String name, Object value) {
 		logConfig.put(name, value);
+		LogConfig.invalidate();
 	}
 
 
@@ -329,6 +370,7 @@ public class LogFactory {
 	 * @param classLoader ClassLoader for which to release the LogFactory
 	 */
 	public static void release(ClassLoader classLoader) {
+		DirectSlf4jLog.release(classLoader);
 		// JULI's log manager looks at the current classLoader so there is no
 		// need to use the passed in classLoader, the default implementation
 		// does not so calling reset in that case will break things
@@ -351,6 +393,30 @@ public class LogFactory {
 		singleton.release();
 	}
 
+	/**
+	 * Invalidate the enabled levels cached by all {@link Log} instances
+	 * returned by this factory. Call this after the logging backend has
+	 * been reconfigured, otherwise level changes may not be picked up.
+	 */
+	public static void refreshLevels() {
+		DirectSlf4jLog.refreshLevels();
+	}
+
+	/**
+	 * Enable TRACE or DEBUG for all loggers on the current thread, in
+	 * addition to the levels enabled in the backend. Events that the
+	 * backend would discard are written at the lowest level it has enabled,
+	 * prefixed with their level. Remove the override in a
+	 * <code>finally</code> block, as long as it is set, the level checks
+	 * of all threads are slightly slower.
+	 *
+	 * @param level TRACE or DEBUG, or <code>null</code> to remove the
+	 *        override of the current thread
+	 */
+	public static void setThreadLevel(String level) {
+		ThreadLevels.INSTANCE.setCurrentThreadLevel(level);
+	}
+
 	/**
 	 * Returns a string that uniquely identifies the specified object, including
 	 * its class.
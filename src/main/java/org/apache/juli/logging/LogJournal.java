@@ -0,0 +1,270 @@
+package org.apache.juli.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Journal of log events in a memory-mapped ring file. Events are appended
+ * with plain stores into the mapping, without system calls, and survive a
+ * crash or kill of the JVM as long as the operating system keeps running.
+ * The journal is read with {@link LogJournalReader}.
+ * <p>
+ * The file starts with a header of {@value #HEADER_SIZE} bytes, followed by
+ * the logger dictionary and the ring. The dictionary takes a sixteenth of
+ * the file and is never overwritten, so the logger names of all events in
+ * the ring are known. Each dictionary entry consists of
+ * <ul>
+ * <li>int: length without alignment, written last to commit the entry</li>
+ * <li>int: logger ID</li>
+ * </ul>
+ * followed by the UTF-8 logger name. Entries are aligned to 8 bytes. Ring
+ * records are
+ * aligned to 8 bytes and never wrap, the rest of the ring is filled with a
+ * padding record instead. Each record starts with
+ * <ul>
+ * <li>int: total length, written last to commit the record</li>
+ * <li>byte: type, byte: level, short: unused</li>
+ * <li>long: absolute position of the record, i.e. bytes written before</li>
+ * <li>long: timestamp in milliseconds</li>
+ * <li>int: logger ID</li>
+ * <li>int: length of the UTF-8 message</li>
+ * </ul>
+ * followed by the message. Once the dictionary is full, events of further
+ * loggers are written as named event records, which carry the length of
+ * the logger name instead of a logger ID and the name in front of the
+ * message.
+ * <p>
+ * The reader recognizes records by their absolute position, which also
+ * tells apart records of older rounds that were partly overwritten. An
+ * existing journal is renamed to {@code <file>.1} when the file is opened
+ * for the first time in this JVM, so that it is available after a restart
+ * caused by a crash. Later journals for the same file in this JVM reuse
+ * the file instead.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class LogJournal {
+	static final String JOURNAL_PROPERTY = "org.apache.juli.logging.journal";
+	static final String SIZE_PROPERTY = "org.apache.juli.logging.journal.size";
+	static final String MODE_PROPERTY = "org.apache.juli.logging.journal.mode";
+
+	enum Mode {
+		/** Write events to the journal and to SLF4J. */
+		BEFORE,
+		/** Write events only to the journal. */
+		INSTEAD
+	}
+
+	static final long MAGIC = 0x4A554C494A524E4CL; // "JULIJRNL"
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 64;
+	static final int CAPACITY_OFFSET = 12;
+	static final int POSITION_OFFSET = 16;
+	static final int DICTIONARY_SIZE_OFFSET = 24;
+
+	static final int ENTRY_HEADER_SIZE = 8;
+	static final int ENTRY_LOGGER_ID_OFFSET = 4;
+
+	static final int RECORD_HEADER_SIZE = 32;
+	static final int LENGTH_OFFSET = 0;
+	static final int TYPE_OFFSET = 4;
+	static final int LEVEL_OFFSET = 5;
+	static final int RECORD_POSITION_OFFSET = 8;
+	static final int TIMESTAMP_OFFSET = 16;
+	static final int LOGGER_ID_OFFSET = 24;
+	static final int MESSAGE_LENGTH_OFFSET = 28;
+
+	static final byte TYPE_EVENT = 1;
+	static final byte TYPE_NAMED_EVENT = 2;
+	static final byte TYPE_PADDING = 3;
+
+	private static final int DEFAULT_SIZE = 16 * 1024 * 1024;
+	private static final int MIN_SIZE = 64 * 1024;
+
+	/** Returned for loggers that did not fit into the dictionary. */
+	private static final Integer NO_LOGGER_ID = 0;
+	/** Files that have already been rotated in this JVM. */
+	private static final Set<Path> ROTATED = ConcurrentHashMap.newKeySet();
+
+	private final Path path;
+	private final MappedByteBuffer buffer;
+	private final int dictionarySize;
+	private final int ringOffset;
+	private final int capacity;
+	private final int maxMessageLength;
+	private final Mode mode;
+	private final AtomicLong position = new AtomicLong();
+	/** Guarded by {@link #loggerIds}. */
+	private int dictionaryPosition;
+	/** Guarded by {@link #loggerIds}. */
+	private int nextLoggerId = 1;
+	private final ConcurrentMap<String, Integer> loggerIds = new ConcurrentHashMap<>();
+
+	LogJournal(File file, int size, Mode mode) throws IOException {
+		this.dictionarySize = (size - HEADER_SIZE) / 16 & ~7;
+		this.ringOffset = HEADER_SIZE + dictionarySize;
+		this.capacity = size - ringOffset & ~7;
+		this.maxMessageLength = capacity / 4;
+		this.mode = mode;
+		this.path = file.toPath().toAbsolutePath();
+		if (ROTATED.add(path) && Files.exists(path)) {
+			// left by a previous JVM
+			Files.move(path, path.resolveSibling(path.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			// the mapping stays valid after the channel is closed
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, ringOffset + capacity);
+		}
+		buffer.putLong(0, MAGIC);
+		buffer.putInt(8, VERSION);
+		buffer.putInt(CAPACITY_OFFSET, capacity);
+		buffer.putLong(POSITION_OFFSET, 0);
+		buffer.putInt(DICTIONARY_SIZE_OFFSET, dictionarySize);
+	}
+
+	static LogJournal fromConfig() {
+		String file = LogFactory.getConfigValue(JOURNAL_PROPERTY, null);
+		int size = LogFactory.getConfigValue(SIZE_PROPERTY, DEFAULT_SIZE);
+		if (size < MIN_SIZE) {
+			throw new LogConfigurationException("Invalid value for " + SIZE_PROPERTY + ": " + size);
+		}
+		String modeName = LogFactory.getConfigValue(MODE_PROPERTY, Mode.BEFORE.name());
+		Mode mode;
+		try {
+			mode = Mode.valueOf(modeName.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new LogConfigurationException("Invalid value for " + MODE_PROPERTY + ": " + modeName, e);
+		}
+		try {
+			return new LogJournal(new File(file), size, mode);
+		} catch (IOException e) {
+			throw new LogConfigurationException("Error creating log journal " + file, e);
+		}
+	}
+
+	/**
+	 * @return Whether this journal writes to the given file
+	 */
+	boolean writesTo(String file) {
+		return path.equals(new File(file).toPath().toAbsolutePath());
+	}
+
+	/**
+	 * @return Whether events are written only to the journal
+	 */
+	boolean isExclusive() {
+		return mode == Mode.INSTEAD;
+	}
+
+	void append(String loggerName, int level, String message, Throwable t) {
+		if (t != null) {
+			StringWriter sw = new StringWriter();
+			sw.append(message).append(System.lineSeparator());
+			t.printStackTrace(new PrintWriter(sw));
+			message = sw.toString();
+		}
+		long now = System.currentTimeMillis();
+		// the entry is committed before other threads can see the ID
+		int loggerId = loggerIds.computeIfAbsent(loggerName, this::define);
+		byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+		if (loggerId == NO_LOGGER_ID) {
+			byte[] name = loggerName.getBytes(StandardCharsets.UTF_8);
+			byte[] payload = new byte[name.length + bytes.length];
+			System.arraycopy(name, 0, payload, 0, name.length);
+			System.arraycopy(bytes, 0, payload, name.length, bytes.length);
+			write(TYPE_NAMED_EVENT, level, now, name.length, payload);
+		} else {
+			write(TYPE_EVENT, level, now, loggerId, bytes);
+		}
+	}
+
+	/**
+	 * Add a logger to the dictionary. Called for each logger only once,
+	 * under the lock of the map entry.
+	 *
+	 * @return The new logger ID, or {@link #NO_LOGGER_ID} if the dictionary
+	 *         is full
+	 */
+	private Integer define(String loggerName) {
+		byte[] name = loggerName.getBytes(StandardCharsets.UTF_8);
+		int length = ENTRY_HEADER_SIZE + name.length;
+		synchronized (loggerIds) {
+			if (dictionaryPosition + length > dictionarySize) {
+				return NO_LOGGER_ID;
+			}
+			int offset = HEADER_SIZE + dictionaryPosition;
+			int loggerId = nextLoggerId++;
+			buffer.putInt(offset + ENTRY_LOGGER_ID_OFFSET, loggerId);
+			for (int i = 0; i < name.length; i++) {
+				buffer.put(offset + ENTRY_HEADER_SIZE + i, name[i]);
+			}
+			buffer.putInt(offset, length);
+			dictionaryPosition += length + 7 & ~7;
+			return loggerId;
+		}
+	}
+
+	private void write(byte type, int level, long timestamp, int loggerId, byte[] bytes) {
+		int messageLength = Math.min(bytes.length, maxMessageLength);
+		int length = RECORD_HEADER_SIZE + messageLength + 7 & ~7;
+		long pos = reserve(length);
+		int offset = ringOffset + (int) (pos % capacity);
+		buffer.put(offset + TYPE_OFFSET, type);
+		buffer.put(offset + LEVEL_OFFSET, (byte) level);
+		buffer.putLong(offset + RECORD_POSITION_OFFSET, pos);
+		buffer.putLong(offset + TIMESTAMP_OFFSET, timestamp);
+		buffer.putInt(offset + LOGGER_ID_OFFSET, loggerId);
+		buffer.putInt(offset + MESSAGE_LENGTH_OFFSET, messageLength);
+		int messageOffset = offset + RECORD_HEADER_SIZE;
+		for (int i = 0; i < messageLength; i++) {
+			buffer.put(messageOffset + i, bytes[i]);
+		}
+		buffer.putInt(offset + LENGTH_OFFSET, length);
+	}
+
+	/**
+	 * Reserve space for a record that does not wrap around the end of the
+	 * ring, and clear the length of the record previously at that place.
+	 */
+	private long reserve(int length) {
+		while (true) {
+			long pos = position.get();
+			int offset = (int) (pos % capacity);
+			int remaining = capacity - offset;
+			if (length <= remaining) {
+				if (position.compareAndSet(pos, pos + length)) {
+					buffer.putInt(ringOffset + offset + LENGTH_OFFSET, 0);
+					buffer.putLong(POSITION_OFFSET, pos + length);
+					return pos;
+				}
+			} else if (position.compareAndSet(pos, pos + remaining)) {
+				writePadding(pos, offset, remaining);
+			}
+		}
+	}
+
+	private void writePadding(long pos, int offset, int length) {
+		int recordOffset = ringOffset + offset;
+		// a padding record may be shorter than a record header
+		buffer.putInt(recordOffset + LENGTH_OFFSET, 0);
+		if (length >= RECORD_HEADER_SIZE) {
+			buffer.put(recordOffset + TYPE_OFFSET, TYPE_PADDING);
+			buffer.putLong(recordOffset + RECORD_POSITION_OFFSET, pos);
+			buffer.putInt(recordOffset + LENGTH_OFFSET, length);
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package org.apache.juli.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reader for the journal written by {@link LogJournal}. Prints the events
+ * as text or forwards them to SLF4J:
+ *
+ * <pre>
+ * java -cp bin/tomcat-juli.jar org.apache.juli.logging.LogJournalReader logs/journal.1
+ * java -cp bin/tomcat-juli.jar:bin/slf4j-api.jar:bin/logback-classic.jar:... org.apache.juli.logging.LogJournalReader --slf4j logs/journal.1
+ * </pre>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public final class LogJournalReader {
+	static final class Event {
+		final long timestamp;
+		final int level;
+		final String loggerName;
+		final String message;
+
+		Event(long timestamp, int level, String loggerName, String message) {
+			this.timestamp = timestamp;
+			this.level = level;
+			this.loggerName = loggerName;
+			this.message = message;
+		}
+
+		@Override
+		public String toString() {
+			return Instant.ofEpochMilli(timestamp) + " " + DirectSlf4jLog.toLevelName(level) + " " + loggerName + " - " + message;
+		}
+	}
+
+	private static final class Record {
+		final long position;
+		final int length;
+		final byte type;
+		final int offset;
+
+		Record(long position, int length, byte type, int offset) {
+			this.position = position;
+			this.length = length;
+			this.type = type;
+			this.offset = offset;
+		}
+	}
+
+	private LogJournalReader() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		boolean slf4j = args.length == 2 && "--slf4j".equals(args[0]);
+		if (args.length != 1 && !slf4j) {
+			System.err.println("Usage: java " + LogJournalReader.class.getName() + " [--slf4j] <journal file>");
+			System.exit(1);
+		}
+		List<Event> events = read(new File(args[args.length - 1]));
+		if (slf4j) {
+			forward(events);
+		} else {
+			print(events, System.out);
+		}
+	}
+
+	static void print(List<Event> events, PrintStream out) {
+		for (Event event : events) {
+			out.println(event);
+		}
+	}
+
+	/**
+	 * Write the events to SLF4J, with the original timestamp as prefix of
+	 * the message.
+	 */
+	static void forward(List<Event> events) {
+		for (Event event : events) {
+			Logger logger = LoggerFactory.getLogger(event.loggerName);
+			String message = "[" + Instant.ofEpochMilli(event.timestamp) + "] " + event.message;
+			switch (event.level) {
+			case DirectSlf4jLog.TRACE:
+				logger.trace(message);
+				break;
+			case DirectSlf4jLog.DEBUG:
+				logger.debug(message);
+				break;
+			case DirectSlf4jLog.INFO:
+				logger.info(message);
+				break;
+			case DirectSlf4jLog.WARN:
+				logger.warn(message);
+				break;
+			default:
+				logger.error(message);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return The complete events in the journal, oldest first
+	 */
+	static List<Event> read(File file) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.capacity() < LogJournal.HEADER_SIZE || buffer.getLong(0) != LogJournal.MAGIC) {
+			throw new IOException("Not a log journal: " + file);
+		}
+		if (buffer.getInt(8) != LogJournal.VERSION) {
+			throw new IOException("Unsupported log journal version " + buffer.getInt(8) + ": " + file);
+		}
+		int capacity = buffer.getInt(LogJournal.CAPACITY_OFFSET);
+		int dictionarySize = buffer.getInt(LogJournal.DICTIONARY_SIZE_OFFSET);
+		int ringOffset = LogJournal.HEADER_SIZE + dictionarySize;
+		if (buffer.capacity() < ringOffset + capacity) {
+			throw new IOException("Truncated log journal: " + file);
+		}
+		Map<Integer, String> loggerNames = readDictionary(buffer, dictionarySize);
+
+		// find committed records at all possible record offsets
+		List<Record> records = new ArrayList<>();
+		long end = buffer.getLong(LogJournal.POSITION_OFFSET);
+		int offset = 0;
+		while (offset + LogJournal.RECORD_HEADER_SIZE <= capacity) {
+			Record record = readRecord(buffer, ringOffset, capacity, offset);
+			if (record == null) {
+				offset += 8;
+			} else {
+				records.add(record);
+				end = Math.max(end, record.position + record.length);
+				offset += record.length;
+			}
+		}
+
+		// records written more than one round ago were partly overwritten
+		long start = end - capacity;
+		records.removeIf(record -> record.position < start);
+		records.sort(Comparator.comparingLong(record -> record.position));
+
+		List<Event> events = new ArrayList<>();
+		for (Record record : records) {
+			if (record.type == LogJournal.TYPE_PADDING) {
+				continue;
+			}
+			int recordOffset = ringOffset + record.offset;
+			byte[] payload = payload(buffer, recordOffset);
+			int loggerId = buffer.getInt(recordOffset + LogJournal.LOGGER_ID_OFFSET);
+			String loggerName;
+			String message;
+			if (record.type == LogJournal.TYPE_NAMED_EVENT) {
+				// the logger ID field holds the length of the name
+				loggerName = new String(payload, 0, loggerId, StandardCharsets.UTF_8);
+				message = new String(payload, loggerId, payload.length - loggerId, StandardCharsets.UTF_8);
+			} else {
+				loggerName = loggerNames.getOrDefault(loggerId, "#" + loggerId);
+				message = new String(payload, StandardCharsets.UTF_8);
+			}
+			events.add(new Event(
+					buffer.getLong(recordOffset + LogJournal.TIMESTAMP_OFFSET),
+					buffer.get(recordOffset + LogJournal.LEVEL_OFFSET),
+					loggerName,
+					message));
+		}
+		return events;
+	}
+
+	/**
+	 * @return Logger names by ID
+	 */
+	private static Map<Integer, String> readDictionary(ByteBuffer buffer, int dictionarySize) {
+		Map<Integer, String> loggerNames = new HashMap<>();
+		int offset = 0;
+		while (offset + LogJournal.ENTRY_HEADER_SIZE <= dictionarySize) {
+			int entryOffset = LogJournal.HEADER_SIZE + offset;
+			int length = buffer.getInt(entryOffset);
+			if (length < LogJournal.ENTRY_HEADER_SIZE || length > dictionarySize - offset) {
+				// end of the dictionary, or an entry that was not committed
+				break;
+			}
+			byte[] name = new byte[length - LogJournal.ENTRY_HEADER_SIZE];
+			for (int i = 0; i < name.length; i++) {
+				name[i] = buffer.get(entryOffset + LogJournal.ENTRY_HEADER_SIZE + i);
+			}
+			loggerNames.put(buffer.getInt(entryOffset + LogJournal.ENTRY_LOGGER_ID_OFFSET), new String(name, StandardCharsets.UTF_8));
+			offset += length + 7 & ~7;
+		}
+		return loggerNames;
+	}
+
+	/**
+	 * @return The committed record at the given ring offset, or
+	 *         <code>null</code> if there is none
+	 */
+	private static Record readRecord(ByteBuffer buffer, int ringOffset, int capacity, int offset) {
+		int recordOffset = ringOffset + offset;
+		int length = buffer.getInt(recordOffset + LogJournal.LENGTH_OFFSET);
+		if (length < LogJournal.RECORD_HEADER_SIZE || (length & 7) != 0 || length > capacity - offset) {
+			return null;
+		}
+		long position = buffer.getLong(recordOffset + LogJournal.RECORD_POSITION_OFFSET);
+		if (position < 0 || position % capacity != offset) {
+			return null;
+		}
+		byte type = buffer.get(recordOffset + LogJournal.TYPE_OFFSET);
+		if (type == LogJournal.TYPE_PADDING) {
+			return new Record(position, length, type, offset);
+		}
+		if (type != LogJournal.TYPE_EVENT && type != LogJournal.TYPE_NAMED_EVENT) {
+			return null;
+		}
+		int messageLength = buffer.getInt(recordOffset + LogJournal.MESSAGE_LENGTH_OFFSET);
+		if (messageLength < 0 || messageLength > length - LogJournal.RECORD_HEADER_SIZE) {
+			return null;
+		}
+		if (type == LogJournal.TYPE_NAMED_EVENT) {
+			int nameLength = buffer.getInt(recordOffset + LogJournal.LOGGER_ID_OFFSET);
+			if (nameLength < 0 || nameLength > messageLength) {
+				return null;
+			}
+		}
+		int level = buffer.get(recordOffset + LogJournal.LEVEL_OFFSET);
+		if (Integer.bitCount(level) != 1 || level > DirectSlf4jLog.ERROR) {
+			return null;
+		}
+		return new Record(position, length, type, offset);
+	}
+
+	/**
+	 * @return The message bytes of the record at the given buffer offset
+	 */
+	private static byte[] payload(ByteBuffer buffer, int recordOffset) {
+		byte[] bytes = new byte[buffer.getInt(recordOffset + LogJournal.MESSAGE_LENGTH_OFFSET)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(recordOffset + LogJournal.RECORD_HEADER_SIZE + i);
+		}
+		return bytes;
+	}
+}
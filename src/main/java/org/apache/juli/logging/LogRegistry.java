@@ -0,0 +1,102 @@
+package org.apache.juli.logging;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Name-keyed registry of {@link Log} instances, partitioned by the context
+ * class loader that was active when a log was first requested.
+ * <p>
+ * Lookups of existing instances do not lock. Entries are kept until
+ * {@link #release(ClassLoader)} or {@link #releaseAll()} is called, which
+ * Tomcat does when a web application is stopped.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class LogRegistry {
+	/** Map key used for the bootstrap class loader, as ConcurrentHashMap does not allow null keys. */
+	private static final Object BOOTSTRAP_CLASS_LOADER = new Object();
+
+	private final ConcurrentMap<Object, ConcurrentMap<String, Log>> logsByClassLoader = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	Log getLog(String name, Function<String, ? extends Log> factory) {
+		ConcurrentMap<String, Log> logs = getLogs(Thread.currentThread().getContextClassLoader());
+		Log log = logs.get(name);
+		if (log != null) {
+			hits.increment();
+			return log;
+		}
+		misses.increment();
+		Log newLog = factory.apply(name);
+		log = logs.putIfAbsent(name, newLog);
+		if (log != null) {
+			// lost the race against another thread, use its instance
+			return log;
+		}
+		return newLog;
+	}
+
+	private ConcurrentMap<String, Log> getLogs(ClassLoader classLoader) {
+		Object key = toKey(classLoader);
+		ConcurrentMap<String, Log> logs = logsByClassLoader.get(key);
+		if (logs == null) {
+			logs = new ConcurrentHashMap<>();
+			ConcurrentMap<String, Log> existingLogs = logsByClassLoader.putIfAbsent(key, logs);
+			if (existingLogs != null) {
+				logs = existingLogs;
+			}
+		}
+		return logs;
+	}
+
+	/**
+	 * @return The released instances
+	 */
+	Collection<Log> release(ClassLoader classLoader) {
+		ConcurrentMap<String, Log> logs = logsByClassLoader.remove(toKey(classLoader));
+		if (logs == null) {
+			return Collections.emptyList();
+		}
+		return logs.values();
+	}
+
+	void releaseAll() {
+		logsByClassLoader.clear();
+	}
+
+	int size() {
+		int size = 0;
+		for (ConcurrentMap<String, Log> logs : logsByClassLoader.values()) {
+			size += logs.size();
+		}
+		return size;
+	}
+
+	void forEach(Consumer<? super Log> action) {
+		for (ConcurrentMap<String, Log> logs : logsByClassLoader.values()) {
+			logs.values().forEach(action);
+		}
+	}
+
+	long getHits() {
+		return hits.sum();
+	}
+
+	long getMisses() {
+		return misses.sum();
+	}
+
+	private static Object toKey(ClassLoader classLoader) {
+		if (classLoader == null) {
+			return BOOTSTRAP_CLASS_LOADER;
+		}
+		return classLoader;
+	}
+}
@@ -0,0 +1,171 @@
+package org.apache.juli.logging;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * {@link LogStatsMBean} implementation that aggregates the
+ * {@link LoggerStats} of all registered logs by logger name.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class LogStats implements LogStatsMBean {
+	static final String STATS_PROPERTY = "org.apache.juli.logging.stats";
+	static final String JMX_PROPERTY = "org.apache.juli.logging.jmx";
+	static final String OBJECT_NAME = "de.mklinger.tomcat.juli:type=LogStats";
+
+	private final LogRegistry registry;
+
+	LogStats(LogRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Register the given MBean with the platform MBean server, unless JMX
+	 * has been switched off or an MBean with the same name is already
+	 * registered.
+	 */
+	static <T> void registerMBean(T mbean, Class<T> mbeanInterface, String objectName) {
+		if (!LogFactory.getConfigValue(JMX_PROPERTY, true)) {
+			return;
+		}
+		try {
+			MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(objectName);
+			if (!mbeanServer.isRegistered(name)) {
+				mbeanServer.registerMBean(new StandardMBean(mbean, mbeanInterface), name);
+			}
+		} catch (JMException | RuntimeException e) {
+			System.err.println("Error registering MBean " + objectName + ": " + e);
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return DirectSlf4jLog.isStatsEnabled();
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		DirectSlf4jLog.setStatsEnabled(enabled);
+	}
+
+	@Override
+	public long getTotalCalls() {
+		long[] total = new long[1];
+		forEachStats((name, stats) -> {
+			for (int i = 0; i < DirectSlf4jLog.LEVEL_COUNT; i++) {
+				total[0] += stats.getCalls(i);
+			}
+		});
+		return total[0];
+	}
+
+	@Override
+	public long getTotalEmitted() {
+		long[] total = new long[1];
+		forEachStats((name, stats) -> {
+			for (int i = 0; i < DirectSlf4jLog.LEVEL_COUNT; i++) {
+				total[0] += stats.getEmitted(i);
+			}
+		});
+		return total[0];
+	}
+
+	@Override
+	public long getTotalRenderedChars() {
+		long[] total = new long[1];
+		forEachStats((name, stats) -> {
+			for (int i = 0; i < DirectSlf4jLog.LEVEL_COUNT; i++) {
+				total[0] += stats.getRenderedChars(i);
+			}
+		});
+		return total[0];
+	}
+
+	@Override
+	public long getAsyncDropped() {
+		return DirectSlf4jLog.getAsyncDroppedCount();
+	}
+
+	@Override
+	public String[] getLoggerStats() {
+		// name -> [calls, emitted, chars] per level
+		Map<String, long[][]> byName = new HashMap<>();
+		forEachStats((name, stats) -> {
+			long[][] values = byName.computeIfAbsent(name, key -> new long[DirectSlf4jLog.LEVEL_COUNT][3]);
+			for (int i = 0; i < DirectSlf4jLog.LEVEL_COUNT; i++) {
+				values[i][0] += stats.getCalls(i);
+				values[i][1] += stats.getEmitted(i);
+				values[i][2] += stats.getRenderedChars(i);
+			}
+		});
+
+		List<Row> rows = new ArrayList<>();
+		for (Map.Entry<String, long[][]> e : byName.entrySet()) {
+			long[][] values = e.getValue();
+			for (int i = 0; i < DirectSlf4jLog.LEVEL_COUNT; i++) {
+				if (values[i][0] != 0) {
+					rows.add(new Row(e.getKey() + " " + DirectSlf4jLog.toLevelName(1 << i)
+							+ " calls=" + values[i][0]
+							+ " emitted=" + values[i][1]
+							+ " chars=" + values[i][2],
+							values[i][1]));
+				}
+			}
+		}
+
+		rows.sort((row1, row2) -> Long.compare(row2.emitted, row1.emitted));
+		String[] result = new String[rows.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = rows.get(i).line;
+		}
+		return result;
+	}
+
+	@Override
+	public String[] topLoggers(int count) {
+		String[] loggerStats = getLoggerStats();
+		return Arrays.copyOf(loggerStats, Math.max(0, Math.min(count, loggerStats.length)));
+	}
+
+	@Override
+	public void reset() {
+		forEachStats((name, stats) -> stats.reset());
+	}
+
+	private static class Row {
+		private final String line;
+		private final long emitted;
+
+		private Row(String line, long emitted) {
+			this.line = line;
+			this.emitted = emitted;
+		}
+	}
+
+	private interface StatsConsumer {
+		void accept(String name, LoggerStats stats);
+	}
+
+	private void forEachStats(StatsConsumer action) {
+		registry.forEach(log -> {
+			if (log instanceof DirectSlf4jLog) {
+				DirectSlf4jLog directLog = (DirectSlf4jLog) log;
+				LoggerStats stats = directLog.getStats();
+				if (stats != null) {
+					action.accept(directLog.getName(), stats);
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,58 @@
+package org.apache.juli.logging;
+
+/**
+ * Management interface for the logging statistics of this bridge, registered
+ * as <code>de.mklinger.tomcat.juli:type=LogStats</code>.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public interface LogStatsMBean {
+	/**
+	 * @return Whether statistics are currently collected
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Switch collection of statistics on or off. When off, logging does not
+	 * pay for the counters.
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * @return The number of logging calls, including calls for disabled
+	 *         levels
+	 */
+	long getTotalCalls();
+
+	/**
+	 * @return The number of events passed on to SLF4J
+	 */
+	long getTotalEmitted();
+
+	/**
+	 * @return The number of characters rendered for events passed on to SLF4J
+	 */
+	long getTotalRenderedChars();
+
+	/**
+	 * @return The number of asynchronous events dropped because the buffer
+	 *         was full
+	 */
+	long getAsyncDropped();
+
+	/**
+	 * @return One line per logger and level, with the loggers that emitted
+	 *         the most events first
+	 */
+	String[] getLoggerStats();
+
+	/**
+	 * @return The first <code>count</code> lines of {@link #getLoggerStats()}
+	 */
+	String[] topLoggers(int count);
+
+	/**
+	 * Reset all counters to zero.
+	 */
+	void reset();
+}
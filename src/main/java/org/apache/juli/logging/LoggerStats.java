@@ -0,0 +1,57 @@
+package org.apache.juli.logging;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-level counters of a single logger. Based on {@link LongAdder}, so
+ * concurrent updates from many threads do not contend.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class LoggerStats {
+	private final LongAdder[] calls = newAdders();
+	private final LongAdder[] emitted = newAdders();
+	private final LongAdder[] renderedChars = newAdders();
+
+	private static LongAdder[] newAdders() {
+		LongAdder[] adders = new LongAdder[DirectSlf4jLog.LEVEL_COUNT];
+		for (int i = 0; i < adders.length; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	static int levelIndex(int level) {
+		return Integer.numberOfTrailingZeros(level);
+	}
+
+	void called(int level) {
+		calls[levelIndex(level)].increment();
+	}
+
+	void emitted(int level, int chars) {
+		int index = levelIndex(level);
+		emitted[index].increment();
+		renderedChars[index].add(chars);
+	}
+
+	long getCalls(int levelIndex) {
+		return calls[levelIndex].sum();
+	}
+
+	long getEmitted(int levelIndex) {
+		return emitted[levelIndex].sum();
+	}
+
+	long getRenderedChars(int levelIndex) {
+		return renderedChars[levelIndex].sum();
+	}
+
+	void reset() {
+		for (int i = 0; i < DirectSlf4jLog.LEVEL_COUNT; i++) {
+			calls[i].reset();
+			emitted[i].reset();
+			renderedChars[i].reset();
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package org.apache.juli.logging;
+
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Count-only mode for chatty loggers. Instead of writing TRACE, DEBUG and
+ * INFO events without a Throwable, the events of one logger are counted per
+ * level and message key, which is the message up to a maximum length.
+ * Messages are rendered with a {@link BoundedMessageRenderer}, so large
+ * messages are not rendered beyond the key length.
+ * Warnings, errors and stack traces are never collapsed into counts. At
+ * the end of each interval, one summary
+ * per key is emitted, e.g.
+ * {@code Message "Connection reset" occurred 48,211 times, first at ..., last at ...}.
+ * <p>
+ * Counters are {@link LongAdder}s, so concurrent threads counting the same
+ * key do not contend. The number of keys per interval is bounded, further
+ * messages are counted under {@value #OTHER_KEY}. A new key reserves its
+ * slot in the interval before it is inserted, so racing threads cannot
+ * exceed the bound. Like the
+ * {@link LatencyBreaker}, the interval ends on the first event after its
+ * end time, and that thread emits the summaries. If no event arrives, the
+ * periodic housekeeping of {@link DirectSlf4jLog} ends it. Events counted
+ * while an interval is being ended may be lost.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class MessageAggregator {
+	/** Comma separated logger name prefixes. */
+	static final String AGGREGATE_PROPERTY = "org.apache.juli.logging.aggregate";
+	static final String INTERVAL_PROPERTY = "org.apache.juli.logging.aggregate.interval";
+	static final String KEY_LENGTH_PROPERTY = "org.apache.juli.logging.aggregate.keyLength";
+	static final String MAX_KEYS_PROPERTY = "org.apache.juli.logging.aggregate.maxKeys";
+
+	private static final int DEFAULT_INTERVAL_MILLIS = 60_000;
+	private static final int DEFAULT_KEY_LENGTH = 80;
+	private static final int DEFAULT_MAX_KEYS = 100;
+	static final String OTHER_KEY = "(other messages)";
+
+	private final long intervalNanos;
+	private final int keyLength;
+	private final int maxKeys;
+	/** Shared by all copies. */
+	private final BoundedMessageRenderer renderer;
+	private final AtomicLong nextFlush;
+	private final AtomicReference<Interval> interval = new AtomicReference<>(new Interval());
+
+	private static final class Interval {
+		/** Per level index. */
+		@SuppressWarnings("unchecked")
+		final ConcurrentMap<String, Counter>[] counters = new ConcurrentMap[DirectSlf4jLog.LEVEL_COUNT];
+		final AtomicInteger keys = new AtomicInteger();
+
+		Interval() {
+			for (int i = 0; i < counters.length; i++) {
+				counters[i] = new ConcurrentHashMap<>();
+			}
+		}
+	}
+
+	private static final class Counter {
+		final LongAdder count = new LongAdder();
+		final long first;
+		final boolean truncated;
+		volatile long last;
+
+		Counter(long now, boolean truncated) {
+			this.first = now;
+			this.last = now;
+			this.truncated = truncated;
+		}
+	}
+
+	MessageAggregator(long intervalMillis, int keyLength, int maxKeys) {
+		this(TimeUnit.MILLISECONDS.toNanos(intervalMillis), keyLength, maxKeys, new BoundedMessageRenderer(keyLength));
+	}
+
+	private MessageAggregator(long intervalNanos, int keyLength, int maxKeys, BoundedMessageRenderer renderer) {
+		this.intervalNanos = intervalNanos;
+		this.keyLength = keyLength;
+		this.maxKeys = maxKeys;
+		this.renderer = renderer;
+		this.nextFlush = new AtomicLong(System.nanoTime() + intervalNanos);
+	}
+
+	/**
+	 * @return A new aggregator with the settings of this one
+	 */
+	MessageAggregator copy() {
+		return new MessageAggregator(intervalNanos, keyLength, maxKeys, renderer);
+	}
+
+	static MessageAggregator fromConfig() {
+		int intervalMillis = LogFactory.getConfigValue(INTERVAL_PROPERTY, DEFAULT_INTERVAL_MILLIS);
+		if (intervalMillis < 1) {
+			throw new LogConfigurationException("Invalid value for " + INTERVAL_PROPERTY + ": " + intervalMillis);
+		}
+		int keyLength = LogFactory.getConfigValue(KEY_LENGTH_PROPERTY, DEFAULT_KEY_LENGTH);
+		if (keyLength < 1) {
+			throw new LogConfigurationException("Invalid value for " + KEY_LENGTH_PROPERTY + ": " + keyLength);
+		}
+		int maxKeys = LogFactory.getConfigValue(MAX_KEYS_PROPERTY, DEFAULT_MAX_KEYS);
+		if (maxKeys < 1) {
+			throw new LogConfigurationException("Invalid value for " + MAX_KEYS_PROPERTY + ": " + maxKeys);
+		}
+		return new MessageAggregator(intervalMillis, keyLength, maxKeys);
+	}
+
+	/**
+	 * @return Whether the given level is aggregated at all
+	 */
+	static boolean isAggregated(int level) {
+		return level < DirectSlf4jLog.WARN;
+	}
+
+	/**
+	 * Count an event.
+	 *
+	 * @return Whether the current interval has ended and the caller has to
+	 *         call {@link #flush(ObjIntConsumer)}
+	 */
+	boolean add(int level, Object message, long now) {
+		// at most the key length and a marker
+		String text = renderer.render(message);
+		boolean truncated = text.length() > keyLength;
+		String key = truncated ? text.substring(0, keyLength) : text;
+		long millis = System.currentTimeMillis();
+
+		Interval interval = this.interval.get();
+		ConcurrentMap<String, Counter> counters = interval.counters[LoggerStats.levelIndex(level)];
+		Counter counter = counters.get(key);
+		if (counter == null) {
+			boolean reserved = interval.keys.incrementAndGet() <= maxKeys;
+			if (!reserved) {
+				interval.keys.decrementAndGet();
+				key = OTHER_KEY;
+				truncated = false;
+				counter = counters.get(key);
+			}
+			if (counter == null) {
+				Counter created = new Counter(millis, truncated);
+				counter = counters.putIfAbsent(key, created);
+				if (counter == null) {
+					counter = created;
+				} else if (reserved) {
+					// another thread inserted the key first
+					interval.keys.decrementAndGet();
+				}
+			}
+		}
+		counter.count.increment();
+		if (counter.last != millis) {
+			// avoid writing the shared field on every event
+			counter.last = millis;
+		}
+
+		return endInterval(now);
+	}
+
+	/**
+	 * @return Whether the current interval has ended and the caller has to
+	 *         call {@link #flush(ObjIntConsumer)}. Returns <code>true</code>
+	 *         to only one of several racing callers.
+	 */
+	boolean endInterval(long now) {
+		long next = nextFlush.get();
+		return now - next >= 0 && nextFlush.compareAndSet(next, now + intervalNanos);
+	}
+
+	/**
+	 * End the current interval and pass one summary per message key with
+	 * its level to the given consumer.
+	 */
+	void flush(ObjIntConsumer<String> summaries) {
+		Interval ended = interval.getAndSet(new Interval());
+		for (int i = 0; i < ended.counters.length; i++) {
+			for (Map.Entry<String, Counter> e : ended.counters[i].entrySet()) {
+				Counter counter = e.getValue();
+				long count = counter.count.sum();
+				if (count > 0) {
+					summaries.accept(toSummary(e.getKey(), counter, count), 1 << i);
+				}
+			}
+		}
+	}
+
+	private static String toSummary(String key, Counter counter, long count) {
+		StringBuilder sb = new StringBuilder(key.length() + 100);
+		if (OTHER_KEY.equals(key)) {
+			sb.append("Other messages");
+		} else {
+			sb.append("Message \"").append(key);
+			if (counter.truncated) {
+				sb.append("...");
+			}
+			sb.append('"');
+		}
+		sb.append(" occurred ").append(String.format(Locale.ROOT, "%,d", count)).append(count == 1 ? " time" : " times");
+		sb.append(", first at ").append(Instant.ofEpochMilli(counter.first));
+		sb.append(", last at ").append(Instant.ofEpochMilli(counter.last));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,204 @@
+package org.apache.juli.logging;
+
+import org.slf4j.Logger;
+
+/**
+ * {@link DirectSlf4jLog} variants for a fixed minimum level. The methods
+ * for levels below the minimum are constant and empty, so the JIT can
+ * remove guarded logging statements for these levels completely. This
+ * includes the overrides of {@link ThreadLevels}, which cannot enable the
+ * ignored levels for single threads.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class MinLevelLogs {
+	static final String MIN_LEVEL_PROPERTY = "org.apache.juli.logging.minLevel";
+
+	private MinLevelLogs() {
+	}
+
+	/**
+	 * @return A log that ignores all levels below the given minimum level,
+	 *         which must not be OFF
+	 */
+	static DirectSlf4jLog create(int minLevel, String name, Logger delegate, AsyncDispatcher dispatcher) {
+		switch (minLevel) {
+		case DirectSlf4jLog.TRACE:
+			return new DirectSlf4jLog(name, delegate, dispatcher);
+		case DirectSlf4jLog.DEBUG:
+			return new DebugLog(name, delegate, dispatcher);
+		case DirectSlf4jLog.INFO:
+			return new InfoLog(name, delegate, dispatcher);
+		case DirectSlf4jLog.WARN:
+			return new WarnLog(name, delegate, dispatcher);
+		default:
+			return new ErrorLog(name, delegate, dispatcher);
+		}
+	}
+
+	/**
+	 * Ignores TRACE.
+	 */
+	static final class DebugLog extends DirectSlf4jLog {
+		DebugLog(String name, Logger delegate, AsyncDispatcher dispatcher) {
+			super(name, delegate, dispatcher);
+		}
+
+		@Override
+		public boolean isTraceEnabled() {
+			return false;
+		}
+
+		@Override
+		public void trace(Object message) {
+		}
+
+		@Override
+		public void trace(Object message, Throwable t) {
+		}
+	}
+
+	/**
+	 * Ignores TRACE and DEBUG.
+	 */
+	static final class InfoLog extends DirectSlf4jLog {
+		InfoLog(String name, Logger delegate, AsyncDispatcher dispatcher) {
+			super(name, delegate, dispatcher);
+		}
+
+		@Override
+		public boolean isTraceEnabled() {
+			return false;
+		}
+
+		@Override
+		public void trace(Object message) {
+		}
+
+		@Override
+		public void trace(Object message, Throwable t) {
+		}
+
+		@Override
+		public boolean isDebugEnabled() {
+			return false;
+		}
+
+		@Override
+		public void debug(Object message) {
+		}
+
+		@Override
+		public void debug(Object message, Throwable t) {
+		}
+	}
+
+	/**
+	 * Ignores TRACE, DEBUG and INFO.
+	 */
+	static final class WarnLog extends DirectSlf4jLog {
+		WarnLog(String name, Logger delegate, AsyncDispatcher dispatcher) {
+			super(name, delegate, dispatcher);
+		}
+
+		@Override
+		public boolean isTraceEnabled() {
+			return false;
+		}
+
+		@Override
+		public void trace(Object message) {
+		}
+
+		@Override
+		public void trace(Object message, Throwable t) {
+		}
+
+		@Override
+		public boolean isDebugEnabled() {
+			return false;
+		}
+
+		@Override
+		public void debug(Object message) {
+		}
+
+		@Override
+		public void debug(Object message, Throwable t) {
+		}
+
+		@Override
+		public boolean isInfoEnabled() {
+			return false;
+		}
+
+		@Override
+		public void info(Object message) {
+		}
+
+		@Override
+		public void info(Object message, Throwable t) {
+		}
+	}
+
+	/**
+	 * Ignores TRACE, DEBUG, INFO and WARN.
+	 */
+	static final class ErrorLog extends DirectSlf4jLog {
+		ErrorLog(String name, Logger delegate, AsyncDispatcher dispatcher) {
+			super(name, delegate, dispatcher);
+		}
+
+		@Override
+		public boolean isTraceEnabled() {
+			return false;
+		}
+
+		@Override
+		public void trace(Object message) {
+		}
+
+		@Override
+		public void trace(Object message, Throwable t) {
+		}
+
+		@Override
+		public boolean isDebugEnabled() {
+			return false;
+		}
+
+		@Override
+		public void debug(Object message) {
+		}
+
+		@Override
+		public void debug(Object message, Throwable t) {
+		}
+
+		@Override
+		public boolean isInfoEnabled() {
+			return false;
+		}
+
+		@Override
+		public void info(Object message) {
+		}
+
+		@Override
+		public void info(Object message, Throwable t) {
+		}
+
+		@Override
+		public boolean isWarnEnabled() {
+			return false;
+		}
+
+		@Override
+		public void warn(Object message) {
+		}
+
+		@Override
+		public void warn(Object message, Throwable t) {
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package org.apache.juli.logging;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable trie over dotted logger name prefixes, resolving the value of
+ * the longest prefix that a logger name equals or starts with, followed by
+ * a dot. The empty prefix matches all names. Chains of nodes without
+ * values are compressed into a single node, so the depth of the trie
+ * depends on the configured prefixes, not on the depth of package names.
+ * <p>
+ * Settings that change at runtime build a new trie and replace the old
+ * one, so lookups never lock.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class NameTrie<V> {
+	private static final NameTrie<?> EMPTY = new NameTrie<>(new Node<>("", null, Collections.emptyMap()));
+
+	private final Node<V> root;
+
+	private static final class Node<V> {
+		/** Dotted name segments from the parent to this node. */
+		final String label;
+		/** May be <code>null</code> for nodes that only branch. */
+		final V value;
+		/** Keyed by the first segment of the child's label. */
+		final Map<String, Node<V>> children;
+
+		Node(String label, V value, Map<String, Node<V>> children) {
+			this.label = label;
+			this.value = value;
+			this.children = children;
+		}
+	}
+
+	private static final class Builder<V> {
+		final Map<String, Builder<V>> children = new LinkedHashMap<>();
+		V value;
+	}
+
+	private NameTrie(Node<V> root) {
+		this.root = root;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <V> NameTrie<V> empty() {
+		return (NameTrie<V>) EMPTY;
+	}
+
+	/**
+	 * @param values Values by prefix, <code>null</code> values are ignored
+	 */
+	static <V> NameTrie<V> of(Map<String, ? extends V> values) {
+		Builder<V> root = new Builder<>();
+		for (Map.Entry<String, ? extends V> e : values.entrySet()) {
+			if (e.getValue() == null) {
+				continue;
+			}
+			Builder<V> node = root;
+			String prefix = e.getKey();
+			if (!prefix.isEmpty()) {
+				int start = 0;
+				while (true) {
+					int end = prefix.indexOf('.', start);
+					String segment = prefix.substring(start, end == -1 ? prefix.length() : end);
+					node = node.children.computeIfAbsent(segment, s -> new Builder<>());
+					if (end == -1) {
+						break;
+					}
+					start = end + 1;
+				}
+			}
+			node.value = e.getValue();
+		}
+		if (root.value == null && root.children.isEmpty()) {
+			return empty();
+		}
+		return new NameTrie<>(new Node<>("", root.value, compressChildren(root)));
+	}
+
+	/**
+	 * @param prefixes Comma separated logger name prefixes, empty entries
+	 *        are ignored
+	 * @return A trie resolving {@link Boolean#TRUE} for all matching names
+	 */
+	static NameTrie<Boolean> ofPrefixes(String prefixes) {
+		Map<String, Boolean> values = new HashMap<>();
+		for (String prefix : prefixes.split(",")) {
+			if (!prefix.trim().isEmpty()) {
+				values.put(prefix.trim(), Boolean.TRUE);
+			}
+		}
+		return of(values);
+	}
+
+	private static <V> Map<String, Node<V>> compressChildren(Builder<V> builder) {
+		if (builder.children.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Map<String, Node<V>> children = new HashMap<>(builder.children.size() * 2);
+		for (Map.Entry<String, Builder<V>> e : builder.children.entrySet()) {
+			StringBuilder label = new StringBuilder(e.getKey());
+			Builder<V> child = e.getValue();
+			while (child.value == null && child.children.size() == 1) {
+				Map.Entry<String, Builder<V>> only = child.children.entrySet().iterator().next();
+				label.append('.').append(only.getKey());
+				child = only.getValue();
+			}
+			children.put(e.getKey(), new Node<>(label.toString(), child.value, compressChildren(child)));
+		}
+		return children;
+	}
+
+	boolean isEmpty() {
+		return this == EMPTY;
+	}
+
+	/**
+	 * @return The value of the longest matching prefix, or
+	 *         <code>null</code> if no prefix matches
+	 */
+	V resolve(String name) {
+		Node<V> node = root;
+		V value = node.value;
+		int start = 0;
+		int length = name.length();
+		while (start <= length && !node.children.isEmpty()) {
+			int end = name.indexOf('.', start);
+			Node<V> child = node.children.get(name.substring(start, end == -1 ? length : end));
+			if (child == null) {
+				break;
+			}
+			int labelEnd = start + child.label.length();
+			if (!name.startsWith(child.label, start) || (labelEnd != length && name.charAt(labelEnd) != '.')) {
+				break;
+			}
+			node = child;
+			if (node.value != null) {
+				value = node.value;
+			}
+			start = labelEnd + 1;
+		}
+		return value;
+	}
+}
@@ -0,0 +1,93 @@
+package org.apache.juli.logging;
+
+/**
+ * Stateless {@link Log} that discards everything. Used when SLF4J is bound
+ * to its no-operation logger, so that logging statements cost nothing once
+ * the JIT has inlined the empty methods.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class NoOpLog implements Log {
+	static final NoOpLog INSTANCE = new NoOpLog();
+
+	private NoOpLog() {
+	}
+
+	@Override
+	public boolean isDebugEnabled() {
+		return false;
+	}
+
+	@Override
+	public boolean isErrorEnabled() {
+		return false;
+	}
+
+	@Override
+	public boolean isFatalEnabled() {
+		return false;
+	}
+
+	@Override
+	public boolean isInfoEnabled() {
+		return false;
+	}
+
+	@Override
+	public boolean isTraceEnabled() {
+		return false;
+	}
+
+	@Override
+	public boolean isWarnEnabled() {
+		return false;
+	}
+
+	@Override
+	public void trace(Object message) {
+	}
+
+	@Override
+	public void trace(Object message, Throwable t) {
+	}
+
+	@Override
+	public void debug(Object message) {
+	}
+
+	@Override
+	public void debug(Object message, Throwable t) {
+	}
+
+	@Override
+	public void info(Object message) {
+	}
+
+	@Override
+	public void info(Object message, Throwable t) {
+	}
+
+	@Override
+	public void warn(Object message) {
+	}
+
+	@Override
+	public void warn(Object message, Throwable t) {
+	}
+
+	@Override
+	public void error(Object message) {
+	}
+
+	@Override
+	public void error(Object message, Throwable t) {
+	}
+
+	@Override
+	public void fatal(Object message) {
+	}
+
+	@Override
+	public void fatal(Object message, Throwable t) {
+	}
+}
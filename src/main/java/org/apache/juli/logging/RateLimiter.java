@@ -0,0 +1,73 @@
+package org.apache.juli.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket for the events of one logger and level, implemented as
+ * generic cell rate algorithm: instead of a token count, the bucket keeps
+ * the theoretical arrival time of the next event, and refilling is implicit
+ * in the passing of time. An event is admitted by a single CAS, so the
+ * bucket needs neither locks nor a refill thread.
+ * <p>
+ * Suppressed events are counted and handed out for reporting at most once
+ * per report interval, either with the next admitted event or by the
+ * periodic housekeeping of {@link DirectSlf4jLog}.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class RateLimiter {
+	private final long intervalNanos;
+	private final long toleranceNanos;
+	private final long reportIntervalNanos;
+	private final AtomicLong theoreticalArrival;
+	private final AtomicLong suppressed = new AtomicLong();
+	private volatile long lastReport;
+
+	/**
+	 * @param eventsPerSecond Sustained rate, which is also the burst size
+	 */
+	RateLimiter(int eventsPerSecond, long reportIntervalMillis) {
+		this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / eventsPerSecond;
+		this.toleranceNanos = intervalNanos * eventsPerSecond;
+		this.reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reportIntervalMillis);
+		long now = System.nanoTime();
+		this.theoreticalArrival = new AtomicLong(now);
+		this.lastReport = now;
+	}
+
+	boolean tryAcquire(long now) {
+		while (true) {
+			long arrival = theoreticalArrival.get();
+			long newArrival = (arrival - now < 0 ? now : arrival) + intervalNanos;
+			if (newArrival - now > toleranceNanos) {
+				suppressed.incrementAndGet();
+				return false;
+			}
+			if (theoreticalArrival.compareAndSet(arrival, newArrival)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of events suppressed since the last report if it
+	 *         is time for a report, 0 otherwise
+	 */
+	long takeSuppressed(long now) {
+		if (suppressed.get() == 0 || now - lastReport < reportIntervalNanos) {
+			return 0;
+		}
+		lastReport = now;
+		return suppressed.getAndSet(0);
+	}
+
+	/**
+	 * @return The number of events suppressed since the last report,
+	 *         regardless of the report interval
+	 */
+	long takeSuppressed() {
+		lastReport = System.nanoTime();
+		return suppressed.getAndSet(0);
+	}
+}
@@ -0,0 +1,168 @@
+package org.apache.juli.logging;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Rate limit rules per logger name prefix and level. Rules have the form
+ * {@code <prefix>=<events per second>} for all levels or
+ * {@code <prefix>@<LEVEL>=<events per second>} for a single level. A rule
+ * for a single level takes precedence over a rule for all levels with the
+ * same prefix, regardless of their order. For each level, the longest
+ * matching prefix wins. Every logger gets its own
+ * {@link RateLimiter} per limited level.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class RateLimits {
+	/** Comma separated rules. */
+	static final String RATE_LIMITS_PROPERTY = "org.apache.juli.logging.rateLimits";
+	/** Properties file with one rule per entry. */
+	static final String RATE_LIMITS_FILE_PROPERTY = "org.apache.juli.logging.rateLimits.file";
+	static final String REPORT_INTERVAL_PROPERTY = "org.apache.juli.logging.rateLimits.reportInterval";
+
+	private static final int DEFAULT_REPORT_INTERVAL_MILLIS = 10_000;
+
+	/** Events per second by prefix, per level index. */
+	private final NameTrie<Integer>[] rates;
+	private final long reportIntervalMillis;
+
+	/**
+	 * @param rates Prefix to events per second per level index, 0 for no
+	 *        limit, as filled by {@link #addRule(Map, String, String)}
+	 */
+	RateLimits(Map<String, int[]> rates, long reportIntervalMillis) {
+		this.rates = levelTries(rates, DirectSlf4jLog.LEVEL_COUNT);
+		this.reportIntervalMillis = reportIntervalMillis;
+	}
+
+	/**
+	 * Set the value of one or all levels for a prefix. A value set for a
+	 * single level is not replaced by a later value for all levels.
+	 *
+	 * @param values Prefix to value per level index, followed by the bit
+	 *        mask of the level indexes that were set individually
+	 * @param levelIndex The level index, or -1 for all levels
+	 */
+	static void putLevelValue(Map<String, int[]> values, String prefix, int levelIndex, int value, int levelCount) {
+		int[] levelValues = values.computeIfAbsent(prefix, p -> new int[levelCount + 1]);
+		if (levelIndex == -1) {
+			int individual = levelValues[levelCount];
+			for (int i = 0; i < levelCount; i++) {
+				if ((individual & 1 << i) == 0) {
+					levelValues[i] = value;
+				}
+			}
+		} else {
+			levelValues[levelIndex] = value;
+			levelValues[levelCount] |= 1 << levelIndex;
+		}
+	}
+
+	/**
+	 * @param values Prefix to value per level index, 0 for none
+	 * @return One trie per level index
+	 */
+	static NameTrie<Integer>[] levelTries(Map<String, int[]> values, int levelCount) {
+		@SuppressWarnings("unchecked")
+		NameTrie<Integer>[] tries = new NameTrie[levelCount];
+		for (int i = 0; i < levelCount; i++) {
+			Map<String, Integer> levelValues = new HashMap<>();
+			for (Map.Entry<String, int[]> e : values.entrySet()) {
+				if (e.getValue()[i] > 0) {
+					levelValues.put(e.getKey(), e.getValue()[i]);
+				}
+			}
+			tries[i] = NameTrie.of(levelValues);
+		}
+		return tries;
+	}
+
+	/**
+	 * @return The configured rules, or <code>null</code> if there are none
+	 */
+	static RateLimits fromConfig() {
+		String rules = LogFactory.getConfigValue(RATE_LIMITS_PROPERTY, null);
+		String file = LogFactory.getConfigValue(RATE_LIMITS_FILE_PROPERTY, null);
+		if (rules == null && file == null) {
+			return null;
+		}
+		int reportIntervalMillis = LogFactory.getConfigValue(REPORT_INTERVAL_PROPERTY, DEFAULT_REPORT_INTERVAL_MILLIS);
+		Map<String, int[]> rates = new TreeMap<>();
+		if (rules != null) {
+			for (String rule : rules.split(",")) {
+				if (!rule.trim().isEmpty()) {
+					int idx = rule.indexOf('=');
+					if (idx == -1) {
+						throw new LogConfigurationException("Invalid rate limit rule: " + rule);
+					}
+					addRule(rates, rule.substring(0, idx), rule.substring(idx + 1));
+				}
+			}
+		}
+		if (file != null) {
+			for (Map.Entry<Object, Object> e : loadProperties(file).entrySet()) {
+				addRule(rates, (String) e.getKey(), (String) e.getValue());
+			}
+		}
+		return new RateLimits(rates, reportIntervalMillis);
+	}
+
+	private static Properties loadProperties(String file) {
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		} catch (IOException e) {
+			throw new LogConfigurationException("Error reading rate limits from " + file, e);
+		}
+		return properties;
+	}
+
+	static void addRule(Map<String, int[]> rates, String key, String value) {
+		String prefix = key.trim();
+		int level = 0;
+		int idx = prefix.lastIndexOf('@');
+		if (idx != -1) {
+			try {
+				level = DirectSlf4jLog.toLevel(prefix.substring(idx + 1));
+			} catch (IllegalArgumentException e) {
+				throw new LogConfigurationException("Invalid level in rate limit rule: " + key, e);
+			}
+			prefix = prefix.substring(0, idx).trim();
+		}
+		int eventsPerSecond;
+		try {
+			eventsPerSecond = Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new LogConfigurationException("Invalid rate in rate limit rule: " + key + "=" + value, e);
+		}
+		if (eventsPerSecond < 1 || level == DirectSlf4jLog.OFF) {
+			throw new LogConfigurationException("Invalid rate limit rule: " + key + "=" + value);
+		}
+		putLevelValue(rates, prefix, level == 0 ? -1 : LoggerStats.levelIndex(level), eventsPerSecond, DirectSlf4jLog.LEVEL_COUNT);
+	}
+
+	/**
+	 * @return New rate limiters for the given logger name, indexed by level
+	 *         index with <code>null</code> for unlimited levels, or
+	 *         <code>null</code> if no level is limited
+	 */
+	RateLimiter[] createLimiters(String name) {
+		RateLimiter[] limiters = null;
+		for (int i = 0; i < DirectSlf4jLog.LEVEL_COUNT; i++) {
+			Integer rate = rates[i].resolve(name);
+			if (rate != null) {
+				if (limiters == null) {
+					limiters = new RateLimiter[DirectSlf4jLog.LEVEL_COUNT];
+				}
+				limiters[i] = new RateLimiter(rate, reportIntervalMillis);
+			}
+		}
+		return limiters;
+	}
+}
@@ -0,0 +1,188 @@
+package org.apache.juli.logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampling rates for TRACE and DEBUG events per logger name prefix. Like
+ * {@link LevelOverrides}, the rates are kept in an immutable map and one
+ * {@link NameTrie} per level, which are replaced on every change, and
+ * changes bump the configuration generation.
+ * Each {@link DirectSlf4jLog} resolves its rates together with its levels
+ * and decides per event, before rendering, with a thread-local random
+ * number generator.
+ * <p>
+ * Initial rates are read from {@link #SAMPLING_PROPERTY} with rules of the
+ * form {@code <prefix>=<rate>} for both levels or
+ * {@code <prefix>@<LEVEL>=<rate>} for a single level. A rate for a single
+ * level takes precedence over a rate for both levels with the same prefix,
+ * regardless of their order. A changed property replaces all rates,
+ * including those set through JMX. It is applied with the next refresh of
+ * the cached levels.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class SamplingRates implements SamplingRatesMBean {
+	static final String OBJECT_NAME = "de.mklinger.tomcat.juli:type=SamplingRates";
+	/** Comma separated rules. */
+	static final String SAMPLING_PROPERTY = "org.apache.juli.logging.sampling";
+
+	/** TRACE and DEBUG, the levels with level index 0 and 1. */
+	private static final int SAMPLED_LEVELS = 2;
+
+	static final SamplingRates INSTANCE = new SamplingRates();
+
+	/**
+	 * Prefix to rate per level index, 0 for no rate, as filled by
+	 * {@link RateLimits#putLevelValue(Map, String, int, int, int)}.
+	 */
+	private volatile Map<String, int[]> rates = Collections.emptyMap();
+	/** Rate by prefix, per level index. */
+	private volatile NameTrie<Integer>[] tries = RateLimits.levelTries(rates, SAMPLED_LEVELS);
+	private String configuredRules;
+
+	private SamplingRates() {
+	}
+
+	/**
+	 * Apply the rules from the configuration, if they changed since the
+	 * last call.
+	 */
+	synchronized void configure(String rules) {
+		if (rules == null ? configuredRules == null : rules.equals(configuredRules)) {
+			return;
+		}
+		Map<String, int[]> newRates = new TreeMap<>();
+		if (rules != null) {
+			for (String rule : rules.split(",")) {
+				if (!rule.trim().isEmpty()) {
+					int idx = rule.indexOf('=');
+					if (idx == -1) {
+						throw new LogConfigurationException("Invalid sampling rule: " + rule);
+					}
+					addRule(newRates, rule.substring(0, idx), rule.substring(idx + 1));
+				}
+			}
+		}
+		configuredRules = rules;
+		update(newRates);
+	}
+
+	private static void addRule(Map<String, int[]> rates, String key, String value) {
+		String prefix = key.trim();
+		String level = "";
+		int idx = prefix.lastIndexOf('@');
+		if (idx != -1) {
+			level = prefix.substring(idx + 1);
+			prefix = prefix.substring(0, idx);
+		}
+		try {
+			putRate(rates, prefix, level, Integer.parseInt(value.trim()));
+		} catch (IllegalArgumentException e) {
+			throw new LogConfigurationException("Invalid sampling rule: " + key + "=" + value, e);
+		}
+	}
+
+	private static void putRate(Map<String, int[]> rates, String prefix, String level, int rate) {
+		if (rate < 1) {
+			throw new IllegalArgumentException("Invalid sampling rate: " + rate);
+		}
+		int levelIndex = -1;
+		if (level != null && !level.trim().isEmpty()) {
+			levelIndex = LoggerStats.levelIndex(DirectSlf4jLog.toLevel(level));
+			if (levelIndex >= SAMPLED_LEVELS) {
+				throw new IllegalArgumentException("Sampling is only supported for TRACE and DEBUG: " + level);
+			}
+		}
+		RateLimits.putLevelValue(rates, prefix == null ? "" : prefix.trim(), levelIndex, rate, SAMPLED_LEVELS);
+	}
+
+	/**
+	 * @return The sampling rates for the given logger name, indexed by level
+	 *         index, or <code>null</code> if all events are kept
+	 */
+	int[] resolve(String name) {
+		NameTrie<Integer>[] tries = this.tries;
+		int[] result = null;
+		for (int i = 0; i < SAMPLED_LEVELS; i++) {
+			Integer rate = tries[i].resolve(name);
+			if (rate != null && rate > 1) {
+				if (result == null) {
+					result = new int[SAMPLED_LEVELS];
+				}
+				result[i] = rate;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param rates The rates returned by {@link #resolve(String)}
+	 * @return The rate of the given level, or 0 if the event is not sampled
+	 */
+	static int rate(int[] rates, int level) {
+		int levelIndex = LoggerStats.levelIndex(level);
+		return levelIndex < SAMPLED_LEVELS ? rates[levelIndex] : 0;
+	}
+
+	/**
+	 * @return Whether to keep an event of the given rate
+	 */
+	static boolean sample(int rate) {
+		return rate <= 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+	}
+
+	@Override
+	public String[] getRates() {
+		List<String> result = new ArrayList<>();
+		for (Map.Entry<String, int[]> e : rates.entrySet()) {
+			for (int i = 0; i < SAMPLED_LEVELS; i++) {
+				int rate = e.getValue()[i];
+				if (rate > 0) {
+					result.add(e.getKey() + "@" + DirectSlf4jLog.toLevelName(1 << i) + "=" + rate);
+				}
+			}
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	@Override
+	public synchronized void setRate(String prefix, String level, int rate) {
+		Map<String, int[]> newRates = copy(rates);
+		putRate(newRates, prefix, level, rate);
+		update(newRates);
+	}
+
+	@Override
+	public synchronized boolean removeRate(String prefix) {
+		Map<String, int[]> newRates = copy(rates);
+		boolean removed = newRates.remove(prefix == null ? "" : prefix.trim()) != null;
+		if (removed) {
+			update(newRates);
+		}
+		return removed;
+	}
+
+	@Override
+	public synchronized void clear() {
+		update(Collections.emptyMap());
+	}
+
+	private static Map<String, int[]> copy(Map<String, int[]> rates) {
+		Map<String, int[]> copy = new TreeMap<>();
+		for (Map.Entry<String, int[]> e : rates.entrySet()) {
+			copy.put(e.getKey(), e.getValue().clone());
+		}
+		return copy;
+	}
+
+	private void update(Map<String, int[]> newRates) {
+		tries = RateLimits.levelTries(newRates, SAMPLED_LEVELS);
+		rates = Collections.unmodifiableMap(newRates);
+		DirectSlf4jLog.refreshLevels();
+	}
+}
@@ -0,0 +1,41 @@
+package org.apache.juli.logging;
+
+/**
+ * Management interface for sampling of TRACE and DEBUG events, registered
+ * as <code>de.mklinger.tomcat.juli:type=SamplingRates</code>.
+ * <p>
+ * A rate of N keeps one in N events on average. A rate applies to all
+ * loggers whose name equals the given prefix or starts with the prefix
+ * followed by a dot. For each level, the longest matching prefix wins.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public interface SamplingRatesMBean {
+	/**
+	 * @return One line <code>prefix@LEVEL=rate</code> per rate
+	 */
+	String[] getRates();
+
+	/**
+	 * Set the sampling rate for the given logger name prefix.
+	 *
+	 * @param prefix Logger name prefix, e.g.
+	 *        <code>org.apache.coyote.http11</code>, or an empty string for
+	 *        all loggers
+	 * @param level TRACE or DEBUG, or an empty string for both
+	 * @param rate Keep one in this many events, 1 to keep all
+	 */
+	void setRate(String prefix, String level, int rate);
+
+	/**
+	 * Remove the sampling rates for the given prefix.
+	 *
+	 * @return Whether there was a rate for the prefix
+	 */
+	boolean removeRate(String prefix);
+
+	/**
+	 * Remove all sampling rates.
+	 */
+	void clear();
+}
@@ -0,0 +1,202 @@
+package org.apache.juli.logging;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * TRACE and DEBUG overrides for the current thread and by thread name
+ * pattern. While no override exists, {@link #isActive()} is
+ * <code>false</code> and {@link DirectSlf4jLog} checks nothing else. With
+ * overrides, each thread caches its level, which is resolved again when the
+ * patterns or the thread name change.
+ * <p>
+ * Overrides of the current thread must be removed by the thread itself,
+ * e.g. in a <code>finally</code> block. They are counted, so that
+ * overrides stay inactive once all threads have removed theirs.
+ * <p>
+ * Overrides do not apply to levels that the {@link MinLevelLogs} variants
+ * ignore, as their level checks are constant.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class ThreadLevels implements ThreadLevelsMBean {
+	static final String OBJECT_NAME = "de.mklinger.tomcat.juli:type=ThreadLevels";
+
+	static final ThreadLevels INSTANCE = new ThreadLevels();
+
+	private static volatile boolean active;
+
+	private final ThreadLocal<ThreadState> threadStates = ThreadLocal.withInitial(ThreadState::new);
+	private final AtomicInteger currentThreadOverrides = new AtomicInteger();
+	private volatile Patterns patterns = new Patterns(Collections.emptyMap());
+
+	private static final class ThreadState {
+		/** Level set for the current thread, 0 for none. */
+		int level;
+		Patterns patterns;
+		String name;
+		int patternLevel;
+	}
+
+	private static final class Patterns {
+		final Map<String, Integer> levels;
+		final Pattern[] regexes;
+		final int[] regexLevels;
+
+		Patterns(Map<String, Integer> levels) {
+			this.levels = Collections.unmodifiableMap(levels);
+			this.regexes = new Pattern[levels.size()];
+			this.regexLevels = new int[levels.size()];
+			int i = 0;
+			for (Map.Entry<String, Integer> e : levels.entrySet()) {
+				regexes[i] = toRegex(e.getKey());
+				regexLevels[i] = e.getValue();
+				i++;
+			}
+		}
+
+		/**
+		 * @return The lowest level of all matching patterns, or 0
+		 */
+		int resolve(String threadName) {
+			int level = 0;
+			for (int i = 0; i < regexes.length; i++) {
+				if ((level == 0 || regexLevels[i] < level) && regexes[i].matcher(threadName).matches()) {
+					level = regexLevels[i];
+				}
+			}
+			return level;
+		}
+
+		private static Pattern toRegex(String glob) {
+			StringBuilder regex = new StringBuilder();
+			int start = 0;
+			for (int i = 0; i < glob.length(); i++) {
+				char c = glob.charAt(i);
+				if (c == '*' || c == '?') {
+					if (i > start) {
+						regex.append(Pattern.quote(glob.substring(start, i)));
+					}
+					regex.append(c == '*' ? ".*" : ".");
+					start = i + 1;
+				}
+			}
+			if (start < glob.length()) {
+				regex.append(Pattern.quote(glob.substring(start)));
+			}
+			return Pattern.compile(regex.toString());
+		}
+	}
+
+	private ThreadLevels() {
+	}
+
+	/**
+	 * @return Whether any override exists
+	 */
+	static boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * @return Whether the given level is enabled for the current thread
+	 */
+	static boolean isEnabled(int level) {
+		int threadLevel = INSTANCE.getLevel();
+		return threadLevel != 0 && level >= threadLevel;
+	}
+
+	private int getLevel() {
+		ThreadState state = threadStates.get();
+		if (state.level != 0) {
+			return state.level;
+		}
+		Patterns patterns = this.patterns;
+		if (patterns.levels.isEmpty()) {
+			return 0;
+		}
+		// a new String on every call before Java 9
+		String name = Thread.currentThread().getName();
+		if (state.patterns != patterns || !name.equals(state.name)) {
+			state.patternLevel = patterns.resolve(name);
+			state.patterns = patterns;
+			state.name = name;
+		}
+		return state.patternLevel;
+	}
+
+	/**
+	 * @param level TRACE or DEBUG, or <code>null</code> to remove the
+	 *        override of the current thread
+	 */
+	void setCurrentThreadLevel(String level) {
+		int parsedLevel = level == null ? 0 : parseLevel(level);
+		ThreadState state = threadStates.get();
+		if (state.level == 0 && parsedLevel != 0) {
+			currentThreadOverrides.incrementAndGet();
+		} else if (state.level != 0 && parsedLevel == 0) {
+			currentThreadOverrides.decrementAndGet();
+		}
+		state.level = parsedLevel;
+		updateActive();
+	}
+
+	private static int parseLevel(String level) {
+		int parsedLevel = DirectSlf4jLog.toLevel(level);
+		if (parsedLevel != DirectSlf4jLog.TRACE && parsedLevel != DirectSlf4jLog.DEBUG) {
+			throw new IllegalArgumentException("Only TRACE and DEBUG can be enabled per thread: " + level);
+		}
+		return parsedLevel;
+	}
+
+	@Override
+	public String[] getThreadLevels() {
+		Map<String, Integer> levels = patterns.levels;
+		String[] result = new String[levels.size()];
+		int i = 0;
+		for (Map.Entry<String, Integer> e : levels.entrySet()) {
+			result[i++] = e.getKey() + "=" + DirectSlf4jLog.toLevelName(e.getValue());
+		}
+		return result;
+	}
+
+	@Override
+	public int getCurrentThreadOverrides() {
+		return currentThreadOverrides.get();
+	}
+
+	@Override
+	public synchronized void setThreadLevel(String threadNamePattern, String level) {
+		int parsedLevel = parseLevel(level);
+		Map<String, Integer> newLevels = new TreeMap<>(patterns.levels);
+		newLevels.put(threadNamePattern == null ? "" : threadNamePattern.trim(), parsedLevel);
+		update(newLevels);
+	}
+
+	@Override
+	public synchronized boolean removeThreadLevel(String threadNamePattern) {
+		Map<String, Integer> newLevels = new TreeMap<>(patterns.levels);
+		boolean removed = newLevels.remove(threadNamePattern == null ? "" : threadNamePattern.trim()) != null;
+		if (removed) {
+			update(newLevels);
+		}
+		return removed;
+	}
+
+	@Override
+	public synchronized void clear() {
+		update(Collections.emptyMap());
+	}
+
+	private void update(Map<String, Integer> newLevels) {
+		patterns = new Patterns(newLevels);
+		updateActive();
+	}
+
+	private synchronized void updateActive() {
+		active = currentThreadOverrides.get() > 0 || !patterns.levels.isEmpty();
+	}
+}
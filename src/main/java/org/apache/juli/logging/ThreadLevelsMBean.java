@@ -0,0 +1,48 @@
+package org.apache.juli.logging;
+
+/**
+ * Management interface for TRACE and DEBUG overrides per thread, registered
+ * as <code>de.mklinger.tomcat.juli:type=ThreadLevels</code>.
+ * <p>
+ * An override enables the given level and all levels above it for all
+ * loggers on threads whose name matches a pattern, in addition to the
+ * levels enabled in the backend. Patterns may contain <code>*</code> for
+ * any number of characters and <code>?</code> for one character, e.g.
+ * <code>http-nio-8080-exec-7</code> or <code>http-nio-8080-exec-*</code>.
+ * The current thread can be overridden with
+ * {@link LogFactory#setThreadLevel(String)}.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public interface ThreadLevelsMBean {
+	/**
+	 * @return One line <code>pattern=LEVEL</code> per override
+	 */
+	String[] getThreadLevels();
+
+	/**
+	 * @return The number of threads with an override set with
+	 *         {@link LogFactory#setThreadLevel(String)}
+	 */
+	int getCurrentThreadOverrides();
+
+	/**
+	 * Set the level for threads whose name matches the given pattern.
+	 *
+	 * @param threadNamePattern Thread name pattern
+	 * @param level TRACE or DEBUG
+	 */
+	void setThreadLevel(String threadNamePattern, String level);
+
+	/**
+	 * Remove the override for the given pattern.
+	 *
+	 * @return Whether there was an override for the pattern
+	 */
+	boolean removeThreadLevel(String threadNamePattern);
+
+	/**
+	 * Remove all overrides by thread name pattern.
+	 */
+	void clear();
+}
@@ -0,0 +1,117 @@
+package org.apache.juli.logging;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded cache of throwable fingerprints. A fingerprint is a hash of the
+ * types and stack frames of a throwable and its causes, without their
+ * messages. Within a time window, only the first occurrence of a
+ * fingerprint is logged with its stack trace; repeats are logged with a
+ * reference to it and a count, but without stack trace.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class ThrowableFingerprints {
+	static final String WINDOW_PROPERTY = "org.apache.juli.logging.fingerprints.window";
+	static final String MAX_SIZE_PROPERTY = "org.apache.juli.logging.fingerprints.maxSize";
+
+	private static final int DEFAULT_MAX_SIZE = 1024;
+	private static final int MAX_CAUSE_DEPTH = 16;
+
+	static final class Fingerprint {
+		private final String id;
+		private final long windowStart;
+		private final AtomicInteger occurrences = new AtomicInteger();
+
+		Fingerprint(String id, long windowStart) {
+			this.id = id;
+			this.windowStart = windowStart;
+		}
+
+		String getId() {
+			return id;
+		}
+
+		/**
+		 * @return The number of occurrences in the window including this
+		 *         one
+		 */
+		int nextOccurrence() {
+			return occurrences.incrementAndGet();
+		}
+	}
+
+	private final ConcurrentMap<Long, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+	private final long windowNanos;
+	private final int maxSize;
+
+	ThrowableFingerprints(long windowMillis, int maxSize) {
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+		this.maxSize = maxSize;
+	}
+
+	static ThrowableFingerprints fromConfig() {
+		int windowMillis = LogFactory.getConfigValue(WINDOW_PROPERTY, 0);
+		int maxSize = LogFactory.getConfigValue(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE);
+		if (maxSize < 1) {
+			throw new LogConfigurationException("Invalid value for " + MAX_SIZE_PROPERTY + ": " + maxSize);
+		}
+		return new ThrowableFingerprints(windowMillis, maxSize);
+	}
+
+	/**
+	 * @return The fingerprint of the throwable in the current window
+	 */
+	Fingerprint get(Throwable t, long now) {
+		Long key = fingerprint(t);
+		Fingerprint fingerprint = fingerprints.get(key);
+		if (fingerprint != null && now - fingerprint.windowStart < windowNanos) {
+			return fingerprint;
+		}
+		Fingerprint newFingerprint = new Fingerprint(String.format("%08x", (int) (key ^ (key >>> 32))), now);
+		if (fingerprint == null) {
+			if (fingerprints.size() >= maxSize) {
+				evict(now);
+			}
+			fingerprint = fingerprints.putIfAbsent(key, newFingerprint);
+			if (fingerprint == null) {
+				return newFingerprint;
+			}
+			// lost the race against another thread, use its instance
+			return fingerprint;
+		}
+		if (fingerprints.replace(key, fingerprint, newFingerprint)) {
+			return newFingerprint;
+		}
+		return get(t, now);
+	}
+
+	private void evict(long now) {
+		fingerprints.values().removeIf(fingerprint -> now - fingerprint.windowStart >= windowNanos);
+		if (fingerprints.size() >= maxSize) {
+			fingerprints.clear();
+		}
+	}
+
+	int size() {
+		return fingerprints.size();
+	}
+
+	static long fingerprint(Throwable t) {
+		long hash = 1125899906842597L;
+		Map<Throwable, Boolean> seen = new IdentityHashMap<>();
+		for (int depth = 0; t != null && depth < MAX_CAUSE_DEPTH && seen.put(t, Boolean.TRUE) == null; depth++) {
+			hash = 31 * hash + t.getClass().getName().hashCode();
+			for (StackTraceElement frame : t.getStackTrace()) {
+				hash = 31 * hash + frame.hashCode();
+			}
+			t = t.getCause();
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,106 @@
+package org.apache.juli.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces throwables by {@link TrimmedThrowable} copies with shorter stack
+ * traces: runs of frames from configured packages, usually the Tomcat
+ * container, are collapsed into a single frame, the number of frames per
+ * throwable is capped and so is the depth of the cause chain.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class ThrowableTrimmer {
+	static final String TRIM_PROPERTY = "org.apache.juli.logging.trim";
+	static final String MAX_FRAMES_PROPERTY = "org.apache.juli.logging.trim.maxFrames";
+	static final String MAX_CAUSES_PROPERTY = "org.apache.juli.logging.trim.maxCauses";
+	static final String COLLAPSE_PROPERTY = "org.apache.juli.logging.trim.collapse";
+
+	private static final int DEFAULT_MAX_FRAMES = 64;
+	private static final int DEFAULT_MAX_CAUSES = 8;
+	private static final String DEFAULT_COLLAPSE = "org.apache.catalina.core,org.apache.tomcat.util.net";
+
+	private final int maxFrames;
+	private final int maxCauses;
+	private final String[] collapsePackages;
+
+	ThrowableTrimmer(int maxFrames, int maxCauses, String[] collapsePackages) {
+		this.maxFrames = maxFrames;
+		this.maxCauses = maxCauses;
+		this.collapsePackages = collapsePackages;
+	}
+
+	static ThrowableTrimmer fromConfig() {
+		int maxFrames = LogFactory.getConfigValue(MAX_FRAMES_PROPERTY, DEFAULT_MAX_FRAMES);
+		if (maxFrames < 1) {
+			throw new LogConfigurationException("Invalid value for " + MAX_FRAMES_PROPERTY + ": " + maxFrames);
+		}
+		int maxCauses = LogFactory.getConfigValue(MAX_CAUSES_PROPERTY, DEFAULT_MAX_CAUSES);
+		if (maxCauses < 0) {
+			throw new LogConfigurationException("Invalid value for " + MAX_CAUSES_PROPERTY + ": " + maxCauses);
+		}
+		List<String> collapsePackages = new ArrayList<>();
+		for (String collapsePackage : LogFactory.getConfigValue(COLLAPSE_PROPERTY, DEFAULT_COLLAPSE).split(",")) {
+			if (!collapsePackage.trim().isEmpty()) {
+				collapsePackages.add(collapsePackage.trim());
+			}
+		}
+		return new ThrowableTrimmer(maxFrames, maxCauses, collapsePackages.toArray(new String[0]));
+	}
+
+	Throwable trim(Throwable t) {
+		return trim(t, 0);
+	}
+
+	private Throwable trim(Throwable t, int depth) {
+		Throwable cause = t.getCause();
+		Throwable trimmedCause = null;
+		if (cause != null && cause != t && depth < maxCauses) {
+			trimmedCause = trim(cause, depth + 1);
+		}
+		TrimmedThrowable trimmed = new TrimmedThrowable(t, trimFrames(t.getStackTrace()), trimmedCause);
+		if (depth < maxCauses) {
+			for (Throwable suppressed : t.getSuppressed()) {
+				trimmed.addSuppressed(trim(suppressed, depth + 1));
+			}
+		}
+		return trimmed;
+	}
+
+	StackTraceElement[] trimFrames(StackTraceElement[] frames) {
+		List<StackTraceElement> kept = new ArrayList<>(Math.min(frames.length, maxFrames + 1));
+		int i = 0;
+		while (i < frames.length && kept.size() < maxFrames) {
+			String collapsePackage = getCollapsePackage(frames[i]);
+			int runEnd = i + 1;
+			if (collapsePackage != null) {
+				while (runEnd < frames.length && collapsePackage.equals(getCollapsePackage(frames[runEnd]))) {
+					runEnd++;
+				}
+			}
+			if (runEnd - i > 1) {
+				kept.add(new StackTraceElement(collapsePackage + ".*", "<" + (runEnd - i) + " frames>", null, -1));
+			} else {
+				kept.add(frames[i]);
+			}
+			i = runEnd;
+		}
+		if (i < frames.length) {
+			kept.add(new StackTraceElement("...", "<" + (frames.length - i) + " more frames>", null, -1));
+		}
+		return kept.toArray(new StackTraceElement[kept.size()]);
+	}
+
+	private String getCollapsePackage(StackTraceElement frame) {
+		String className = frame.getClassName();
+		for (String collapsePackage : collapsePackages) {
+			if (className.startsWith(collapsePackage)
+					&& className.length() > collapsePackage.length()
+					&& className.charAt(collapsePackage.length()) == '.') {
+				return collapsePackage;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,34 @@
+package org.apache.juli.logging;
+
+/**
+ * Stand-in for a throwable with a trimmed stack trace, created by
+ * {@link ThrowableTrimmer}. {@link #toString()} returns the one of the
+ * original throwable, so it prints like the original. Backends that print
+ * the class name and message separately print the original
+ * {@link #toString()} as message.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+final class TrimmedThrowable extends Throwable {
+	private static final long serialVersionUID = 1L;
+
+	private final transient Throwable original;
+
+	TrimmedThrowable(Throwable original, StackTraceElement[] stackTrace, Throwable cause) {
+		super(original.toString(), cause);
+		this.original = original;
+		setStackTrace(stackTrace);
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		// the stack trace is set from the original
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		// the original is not serialized, the message holds its toString()
+		return original != null ? original.toString() : getMessage();
+	}
+}
@@ -0,0 +1,71 @@
+package de.mklinger.tomcat.juli.logging;
+
+import java.lang.management.ManagementFactory;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class AllocationTest {
+	private static final int ITERATIONS = 100_000;
+
+	/** Tolerance for allocations done by the measurement itself. */
+	private static final long MAX_ALLOCATED_BYTES = 1024;
+
+	@Test
+	public void testDisabledLevelsDoNotAllocate() {
+		com.sun.management.ThreadMXBean threadMXBean = getThreadMXBean();
+
+		// slf4j-simple defaults to INFO
+		Log log = LogFactory.getLog(AllocationTest.class);
+		Assert.assertFalse(log.isDebugEnabled());
+
+		CountingMessage message = new CountingMessage();
+		Throwable t = new Exception();
+
+		logDisabled(log, message, t);
+
+		long threadId = Thread.currentThread().getId();
+		long before = threadMXBean.getThreadAllocatedBytes(threadId);
+		logDisabled(log, message, t);
+		long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+		Assert.assertEquals(0, message.toStringCalls);
+		Assert.assertTrue("Allocated " + allocated + " bytes for " + 4 * ITERATIONS + " disabled log calls",
+				allocated <= MAX_ALLOCATED_BYTES);
+	}
+
+	private static void logDisabled(Log log, Object message, Throwable t) {
+		for (int i = 0; i < ITERATIONS; i++) {
+			log.trace(message);
+			log.trace(message, t);
+			log.debug(message);
+			log.debug(message, t);
+		}
+	}
+
+	private static com.sun.management.ThreadMXBean getThreadMXBean() {
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+		// first call may allocate
+		threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return threadMXBean;
+	}
+
+	private static class CountingMessage {
+		private int toStringCalls;
+
+		@Override
+		public String toString() {
+			toStringCalls++;
+			return "Message " + toStringCalls;
+		}
+	}
+}
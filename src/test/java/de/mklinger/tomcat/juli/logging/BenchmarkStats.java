@@ -0,0 +1,44 @@
+package de.mklinger.tomcat.juli.logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Percentile summaries for the integration benchmarks.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class BenchmarkStats {
+	private BenchmarkStats() {
+	}
+
+	/**
+	 * @return A JSON object with count, min, p50, p90, p99, max and mean of
+	 *         the values, or {@code null} if there are no values
+	 */
+	public static String summary(final List<Long> values) {
+		if (values.isEmpty()) {
+			return "null";
+		}
+		final List<Long> sorted = new ArrayList<>(values);
+		Collections.sort(sorted);
+		final double mean = sorted.stream().mapToLong(Long::longValue).average().getAsDouble();
+		return String.format(Locale.ROOT,
+				"{ \"count\": %d, \"min\": %d, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"max\": %d, \"mean\": %.1f }",
+				sorted.size(),
+				sorted.get(0),
+				percentile(sorted, 50),
+				percentile(sorted, 90),
+				percentile(sorted, 99),
+				sorted.get(sorted.size() - 1),
+				mean);
+	}
+
+	/** Nearest-rank percentile of sorted values. */
+	public static long percentile(final List<Long> sorted, final int percentile) {
+		final int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+		return sorted.get(Math.max(0, rank - 1));
+	}
+}
@@ -0,0 +1,124 @@
+package de.mklinger.tomcat.juli.logging;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.juli.logging.DirectSlf4jLog;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class DirectSlf4jLogTest {
+	@Test
+	public void testSharedInstance() {
+		long hits = DirectSlf4jLog.getCacheHits();
+		long misses = DirectSlf4jLog.getCacheMisses();
+
+		Log log1 = LogFactory.getLog("test.shared");
+		Log log2 = LogFactory.getLog("test.shared");
+
+		Assert.assertSame(log1, log2);
+		Assert.assertEquals(hits + 1, DirectSlf4jLog.getCacheHits());
+		Assert.assertEquals(misses + 1, DirectSlf4jLog.getCacheMisses());
+	}
+
+	@Test
+	public void testRelease() {
+		Log log1 = LogFactory.getLog("test.release");
+		LogFactory.release(Thread.currentThread().getContextClassLoader());
+		Log log2 = LogFactory.getLog("test.release");
+		Assert.assertNotSame(log1, log2);
+
+		LogFactory.releaseAll();
+		Assert.assertEquals(0, DirectSlf4jLog.getCacheSize());
+	}
+
+	@Test
+	public void testLazy() {
+		LogFactory.getFactory().setAttribute("org.apache.juli.logging.lazy", "true");
+		try {
+			Log log = LogFactory.getLog("test.lazy");
+			Assert.assertTrue(log.isInfoEnabled());
+			Assert.assertFalse(log.isDebugEnabled());
+			log.info("lazy");
+		} finally {
+			LogFactory.getFactory().removeAttribute("org.apache.juli.logging.lazy");
+		}
+	}
+
+	@Test
+	public void testCachedLevels() {
+		RecordingLogger delegate = new RecordingLogger("test.levels", RecordingLogger.INFO);
+		Log log = new DirectSlf4jLog(delegate);
+		int queries = delegate.getLevelQueries();
+
+		Assert.assertFalse(log.isDebugEnabled());
+		Assert.assertTrue(log.isInfoEnabled());
+		Assert.assertEquals(queries, delegate.getLevelQueries());
+
+		delegate.setLevel(RecordingLogger.DEBUG);
+		Assert.assertFalse(log.isDebugEnabled());
+
+		LogFactory.refreshLevels();
+		Assert.assertTrue(log.isDebugEnabled());
+		Assert.assertFalse(log.isTraceEnabled());
+	}
+
+	@Test
+	public void testStats() throws JMException {
+		MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("de.mklinger.tomcat.juli:type=LogStats");
+		Log log = LogFactory.getLog("test.stats");
+
+		mbeanServer.setAttribute(name, new Attribute("Enabled", true));
+		try {
+			for (int i = 0; i < 3; i++) {
+				log.debug("debug");
+			}
+			log.info("info");
+			log.info("info");
+
+			List<String> stats = Arrays.asList((String[]) mbeanServer.getAttribute(name, "LoggerStats"));
+			Assert.assertTrue(stats.toString(), stats.contains("test.stats INFO calls=2 emitted=2 chars=8"));
+			Assert.assertTrue(stats.toString(), stats.contains("test.stats DEBUG calls=3 emitted=0 chars=0"));
+		} finally {
+			mbeanServer.setAttribute(name, new Attribute("Enabled", false));
+		}
+	}
+
+	@Test
+	public void testLevelOverride() throws JMException {
+		MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("de.mklinger.tomcat.juli:type=LevelOverrides");
+		Log log = LogFactory.getLog("test.override.Component");
+		Log otherLog = LogFactory.getLog("test.overrideOther");
+		Assert.assertTrue(log.isInfoEnabled());
+
+		invoke(mbeanServer, name, "setLevel", "test.override", "WARN");
+		try {
+			Assert.assertFalse(log.isInfoEnabled());
+			Assert.assertTrue(log.isWarnEnabled());
+			Assert.assertTrue(otherLog.isInfoEnabled());
+			Assert.assertArrayEquals(new String[] { "test.override=WARN" }, (String[]) mbeanServer.getAttribute(name, "Overrides"));
+		} finally {
+			mbeanServer.invoke(name, "clear", null, null);
+		}
+		Assert.assertTrue(log.isInfoEnabled());
+	}
+
+	private static void invoke(MBeanServer mbeanServer, ObjectName name, String operation, String... params) throws JMException {
+		String[] signature = new String[params.length];
+		Arrays.fill(signature, String.class.getName());
+		mbeanServer.invoke(name, operation, params, signature);
+	}
+}
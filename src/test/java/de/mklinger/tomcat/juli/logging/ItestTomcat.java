@@ -0,0 +1,192 @@
+package de.mklinger.tomcat.juli.logging;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import de.mklinger.commons.exec.Cmd;
+import de.mklinger.commons.exec.CmdBuilder;
+import de.mklinger.commons.exec.CmdException;
+import de.mklinger.commons.exec.CmdSettings;
+import de.mklinger.commons.exec.CmdUtil;
+import de.mklinger.commons.exec.JavaHome;
+
+/**
+ * The unpacked Tomcat distribution used by the integration tests, with
+ * free ports configured in server.xml. The original server.xml is restored
+ * on {@link #close()}.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class ItestTomcat implements AutoCloseable {
+	private final File catalinaHome;
+	private final File serverXml;
+	private final Path serverXmlBackup;
+	private final int httpPort;
+
+	public ItestTomcat() throws IOException {
+		this.catalinaHome = findCatalinaHome();
+		checkCatalinaHome(catalinaHome);
+
+		final int controlPort = getFreePort();
+		this.httpPort = getFreePort();
+		final int ajpPort = getFreePort();
+
+		this.serverXml = new File(new File(catalinaHome, "conf"), "server.xml");
+		this.serverXmlBackup = Files.createTempFile("server", ".xml");
+		Files.copy(serverXml.toPath(), serverXmlBackup, StandardCopyOption.REPLACE_EXISTING);
+		Files.write(serverXml.toPath(),
+				Files.readAllLines(serverXml.toPath(), StandardCharsets.UTF_8).stream()
+				.map(line -> line.replace("8005", String.valueOf(controlPort)))
+				.map(line -> line.replace("8080", String.valueOf(httpPort)))
+				.map(line -> line.replace("8009", String.valueOf(ajpPort)))
+				.collect(Collectors.toList()));
+	}
+
+	public File getCatalinaHome() {
+		return catalinaHome;
+	}
+
+	public File getBinDir() {
+		return new File(catalinaHome, "bin");
+	}
+
+	public int getHttpPort() {
+		return httpPort;
+	}
+
+	/**
+	 * Start Tomcat in the foreground of a new process. The caller must
+	 * destroy the returned command.
+	 */
+	public Cmd start(final OutputStream out, final String catalinaOpts) throws CmdException {
+		final CmdSettings cmdSettings = new CmdBuilder(getExecutable(catalinaHome))
+				.arg("run")
+				.directory(getBinDir())
+				.redirectErrorStream(true)
+				.stdout(out)
+				.destroyForcibly(true)
+				.destroyOnError(true)
+				.toCmdSettings();
+		cmdSettings.setEnvironment(getEnvironment(catalinaHome, catalinaOpts));
+		cmdSettings.freeze();
+
+		final Cmd cmd = new Cmd(cmdSettings);
+		cmd.start();
+		return cmd;
+	}
+
+	/**
+	 * Wait until the HTTP connector answers requests, which is the case once
+	 * Tomcat has completed startup.
+	 *
+	 * @return Whether Tomcat answered within the timeout
+	 */
+	public boolean awaitHttp(final Cmd cmd, final long timeout, final TimeUnit unit) throws InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (System.nanoTime() - deadline < 0 && cmd.isExecuting()) {
+			try {
+				final HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + httpPort + "/").openConnection();
+				connection.setConnectTimeout(200);
+				connection.setReadTimeout(1000);
+				connection.getResponseCode();
+				connection.disconnect();
+				return true;
+			} catch (final IOException e) {
+				// not yet
+			}
+			Thread.sleep(10);
+		}
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		Files.move(serverXmlBackup, serverXml.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static File getExecutable(final File catalinaHome) {
+		final String executableName;
+		if (CmdUtil.isWindows()) {
+			executableName = "catalina.bat";
+		} else {
+			executableName = "catalina.sh";
+		}
+		return new File(new File(catalinaHome, "bin"), executableName);
+	}
+
+	private static Map<String, String> getEnvironment(final File catalinaHome, final String catalinaOpts) {
+		final Map<String, String> environment = new HashMap<>(System.getenv());
+
+		for (final Iterator<Map.Entry<String, String>> iterator = environment.entrySet().iterator(); iterator.hasNext();) {
+			final Map.Entry<String, String> e = iterator.next();
+			if (e.getKey().contains("CATALINA") || e.getKey().contains("TOMCAT") || e.getKey().contains("JAVA")) {
+				System.out.println("Removing from environment: " + e.getKey() + " -> " + e.getValue());
+				iterator.remove();
+			}
+		}
+
+		environment.put("CATALINA_HOME", catalinaHome.getAbsolutePath());
+		environment.put("JAVA_HOME", JavaHome.getByRuntime().getJavaHome().getAbsolutePath());
+
+		if (catalinaOpts != null && !catalinaOpts.trim().isEmpty()) {
+			environment.put("CATALINA_OPTS", catalinaOpts.trim());
+		}
+
+		return environment;
+	}
+
+	private static int getFreePort() throws IOException {
+		while (true) {
+			try (ServerSocket ss = new ServerSocket()) {
+				ss.bind(new InetSocketAddress((int) Math.round(Math.random() * 15_000.0 + 50_000.0)));
+				return ss.getLocalPort();
+			} catch (final IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	private static void checkCatalinaHome(final File catalinaHome) {
+		if (!new File(catalinaHome, "bin").isDirectory()) {
+			throw new IllegalStateException("Invalid catalina home: " + catalinaHome);
+		}
+		if (!new File(catalinaHome, "logs").isDirectory()) {
+			throw new IllegalStateException("Invalid catalina home: " + catalinaHome);
+		}
+		if (!new File(catalinaHome, "conf").isDirectory()) {
+			throw new IllegalStateException("Invalid catalina home: " + catalinaHome);
+		}
+	}
+
+	private static File findCatalinaHome() throws FileNotFoundException {
+		final String catalinaHomeProp = System.getProperty("catalina.home");
+		if (catalinaHomeProp != null && !catalinaHomeProp.isEmpty()) {
+			return new File(catalinaHomeProp);
+		} else {
+			final File itestDir = new File("target/itest");
+			if (!itestDir.isDirectory()) {
+				throw new FileNotFoundException("ITest directory not found");
+			}
+			final File[] files = itestDir.listFiles();
+			if (files == null || files.length != 1) {
+				throw new FileNotFoundException("ITest directory not found");
+			}
+			return files[0];
+		}
+	}
+}
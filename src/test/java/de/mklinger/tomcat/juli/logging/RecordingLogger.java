@@ -0,0 +1,250 @@
+package de.mklinger.tomcat.juli.logging;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.helpers.FormattingTuple;
+import org.slf4j.helpers.MarkerIgnoringBase;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * SLF4J logger for tests that records all events at or above a switchable
+ * level.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class RecordingLogger extends MarkerIgnoringBase {
+	private static final long serialVersionUID = 1L;
+
+	public static final int TRACE = 0;
+	public static final int DEBUG = 1;
+	public static final int INFO = 2;
+	public static final int WARN = 3;
+	public static final int ERROR = 4;
+	public static final int OFF = 5;
+
+	private final List<Event> events = new CopyOnWriteArrayList<>();
+	private volatile int level;
+	private int levelQueries;
+
+	public RecordingLogger(String name, int level) {
+		this.name = name;
+		this.level = level;
+	}
+
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	public List<Event> getEvents() {
+		return events;
+	}
+
+	public int getLevelQueries() {
+		return levelQueries;
+	}
+
+	private boolean isEnabled(int level) {
+		levelQueries++;
+		return level >= this.level;
+	}
+
+	private void log(int level, String message, Throwable t) {
+		if (level >= this.level) {
+			append(level, message, t);
+		}
+	}
+
+	private void log(int level, String format, Object... arguments) {
+		if (level >= this.level) {
+			FormattingTuple tuple = MessageFormatter.arrayFormat(format, arguments);
+			append(level, tuple.getMessage(), tuple.getThrowable());
+		}
+	}
+
+	/**
+	 * Called for every enabled event. Records the event by default.
+	 */
+	protected void append(int level, String message, Throwable t) {
+		events.add(new Event(level, message, t));
+	}
+
+	public static class Event {
+		private final int level;
+		private final String message;
+		private final Throwable throwable;
+
+		public Event(int level, String message, Throwable throwable) {
+			this.level = level;
+			this.message = message;
+			this.throwable = throwable;
+		}
+
+		public int getLevel() {
+			return level;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public Throwable getThrowable() {
+			return throwable;
+		}
+
+		@Override
+		public String toString() {
+			return level + " " + message;
+		}
+	}
+
+	@Override
+	public boolean isTraceEnabled() {
+		return isEnabled(TRACE);
+	}
+
+	@Override
+	public void trace(String msg) {
+		log(TRACE, msg, (Throwable) null);
+	}
+
+	@Override
+	public void trace(String format, Object arg) {
+		log(TRACE, format, arg);
+	}
+
+	@Override
+	public void trace(String format, Object arg1, Object arg2) {
+		log(TRACE, format, arg1, arg2);
+	}
+
+	@Override
+	public void trace(String format, Object... arguments) {
+		log(TRACE, format, arguments);
+	}
+
+	@Override
+	public void trace(String msg, Throwable t) {
+		log(TRACE, msg, t);
+	}
+
+	@Override
+	public boolean isDebugEnabled() {
+		return isEnabled(DEBUG);
+	}
+
+	@Override
+	public void debug(String msg) {
+		log(DEBUG, msg, (Throwable) null);
+	}
+
+	@Override
+	public void debug(String format, Object arg) {
+		log(DEBUG, format, arg);
+	}
+
+	@Override
+	public void debug(String format, Object arg1, Object arg2) {
+		log(DEBUG, format, arg1, arg2);
+	}
+
+	@Override
+	public void debug(String format, Object... arguments) {
+		log(DEBUG, format, arguments);
+	}
+
+	@Override
+	public void debug(String msg, Throwable t) {
+		log(DEBUG, msg, t);
+	}
+
+	@Override
+	public boolean isInfoEnabled() {
+		return isEnabled(INFO);
+	}
+
+	@Override
+	public void info(String msg) {
+		log(INFO, msg, (Throwable) null);
+	}
+
+	@Override
+	public void info(String format, Object arg) {
+		log(INFO, format, arg);
+	}
+
+	@Override
+	public void info(String format, Object arg1, Object arg2) {
+		log(INFO, format, arg1, arg2);
+	}
+
+	@Override
+	public void info(String format, Object... arguments) {
+		log(INFO, format, arguments);
+	}
+
+	@Override
+	public void info(String msg, Throwable t) {
+		log(INFO, msg, t);
+	}
+
+	@Override
+	public boolean isWarnEnabled() {
+		return isEnabled(WARN);
+	}
+
+	@Override
+	public void warn(String msg) {
+		log(WARN, msg, (Throwable) null);
+	}
+
+	@Override
+	public void warn(String format, Object arg) {
+		log(WARN, format, arg);
+	}
+
+	@Override
+	public void warn(String format, Object arg1, Object arg2) {
+		log(WARN, format, arg1, arg2);
+	}
+
+	@Override
+	public void warn(String format, Object... arguments) {
+		log(WARN, format, arguments);
+	}
+
+	@Override
+	public void warn(String msg, Throwable t) {
+		log(WARN, msg, t);
+	}
+
+	@Override
+	public boolean isErrorEnabled() {
+		return isEnabled(ERROR);
+	}
+
+	@Override
+	public void error(String msg) {
+		log(ERROR, msg, (Throwable) null);
+	}
+
+	@Override
+	public void error(String format, Object arg) {
+		log(ERROR, format, arg);
+	}
+
+	@Override
+	public void error(String format, Object arg1, Object arg2) {
+		log(ERROR, format, arg1, arg2);
+	}
+
+	@Override
+	public void error(String format, Object... arguments) {
+		log(ERROR, format, arguments);
+	}
+
+	@Override
+	public void error(String msg, Throwable t) {
+		log(ERROR, msg, t);
+	}
+}
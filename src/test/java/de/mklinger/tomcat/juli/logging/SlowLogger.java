@@ -0,0 +1,57 @@
+package de.mklinger.tomcat.juli.logging;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in SLF4J backend logger with configurable write latency, used by
+ * {@link ThroughputBenchmarkIT}. All loggers share one lock, like appenders
+ * of real backends do, and discard the events after the delay.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ * <li>{@code slowlogger.latencyMillis}: delay of every write</li>
+ * <li>{@code slowlogger.stallIntervalMillis} and
+ * {@code slowlogger.stallMillis}: one write per interval blocks for the
+ * stall time</li>
+ * </ul>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class SlowLogger extends RecordingLogger {
+	private static final long serialVersionUID = 1L;
+
+	static final String LATENCY_PROPERTY = "slowlogger.latencyMillis";
+	static final String STALL_INTERVAL_PROPERTY = "slowlogger.stallIntervalMillis";
+	static final String STALL_PROPERTY = "slowlogger.stallMillis";
+
+	private static final Object LOCK = new Object();
+	private static final long LATENCY_MILLIS = Long.getLong(LATENCY_PROPERTY, 0);
+	private static final long STALL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong(STALL_INTERVAL_PROPERTY, 0));
+	private static final long STALL_MILLIS = Long.getLong(STALL_PROPERTY, 0);
+	private static long nextStall = System.nanoTime() + STALL_INTERVAL_NANOS;
+
+	public SlowLogger(String name) {
+		super(name, INFO);
+	}
+
+	@Override
+	protected void append(int level, String message, Throwable t) {
+		synchronized (LOCK) {
+			long delay = LATENCY_MILLIS;
+			if (STALL_INTERVAL_NANOS > 0) {
+				long now = System.nanoTime();
+				if (now - nextStall >= 0) {
+					nextStall = now + STALL_INTERVAL_NANOS;
+					delay += STALL_MILLIS;
+				}
+			}
+			if (delay > 0) {
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package de.mklinger.tomcat.juli.logging;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+
+/**
+ * Logger factory of the {@link SlowLogger} backend.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class SlowLoggerFactory implements ILoggerFactory {
+	private final ConcurrentMap<String, Logger> loggers = new ConcurrentHashMap<>();
+
+	@Override
+	public Logger getLogger(String name) {
+		return loggers.computeIfAbsent(name, SlowLogger::new);
+	}
+}
@@ -0,0 +1,218 @@
+package de.mklinger.tomcat.juli.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.mklinger.commons.exec.Cmd;
+import de.mklinger.commons.exec.CmdException;
+
+/**
+ * Repeatable Tomcat startup benchmark comparing the stock tomcat-juli.jar
+ * against this jar with different SLF4J bindings, each with eager and with
+ * lazy logger resolution.
+ * <p>
+ * Each run starts a fresh Tomcat JVM and measures the wall clock time until
+ * the HTTP connector answers, the startup time reported by Tomcat (if the
+ * binding prints it) and the number of classes loaded at that point. Runs of
+ * the different setups are interleaved to spread out noise from the machine.
+ * Results are written to {@code target/startup-benchmark.json}.
+ * <p>
+ * Not run by default, use {@code mvn verify -Pstartupbenchmark}.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class StartupBenchmarkIT {
+	private static final Pattern STARTUP_PATTERN = Pattern.compile("Server startup in \\[(\\d+)\\] milliseconds");
+	private static final long STARTUP_TIMEOUT_SECONDS = 60;
+	private static final String LAZY_OPTS = "-Dorg.apache.juli.logging.lazy=true";
+
+	private static class Setup {
+		final String name;
+		final File juliJar;
+		final String binding;
+		final String catalinaOpts;
+		final Map<String, List<Long>> results = new LinkedHashMap<>();
+
+		Setup(final String name, final File juliJar, final String binding, final String catalinaOpts) {
+			this.name = name;
+			this.juliJar = juliJar;
+			this.binding = binding;
+			this.catalinaOpts = catalinaOpts;
+			results.put("readyMillis", new ArrayList<>());
+			results.put("reportedStartupMillis", new ArrayList<>());
+			results.put("loadedClasses", new ArrayList<>());
+		}
+	}
+
+	@Test
+	public void test() throws IOException, CmdException, InterruptedException {
+		final int runs = Integer.getInteger("itest.startupBenchmark.runs", 20);
+		final int warmups = Integer.getInteger("itest.startupBenchmark.warmups", 1);
+
+		try (ItestTomcat tomcat = new ItestTomcat()) {
+			final File binDir = tomcat.getBinDir();
+			final File installedJar = new File(binDir, "tomcat-juli.jar");
+			final File setenvSh = new File(binDir, "setenv.sh");
+			final File setenvBat = new File(binDir, "setenv.bat");
+
+			final Path backupDir = Files.createTempDirectory("startup-benchmark");
+			final File thisJar = backupDir.resolve("tomcat-juli-slf4j.jar").toFile();
+			Files.copy(installedJar.toPath(), thisJar.toPath());
+			Files.copy(setenvSh.toPath(), backupDir.resolve(setenvSh.getName()));
+			Files.copy(setenvBat.toPath(), backupDir.resolve(setenvBat.getName()));
+
+			final File stockJar = new File("target/test-jars/tomcat-juli.jar");
+			Assert.assertTrue("Stock tomcat-juli.jar not found: " + stockJar, stockJar.isFile());
+
+			final List<Setup> setups = Arrays.asList(
+					new Setup("tomcat-juli", stockJar, null, null),
+					new Setup("tomcat-juli-slf4j+slf4j-simple", thisJar, "slf4j-simple", null),
+					new Setup("tomcat-juli-slf4j+slf4j-simple+lazy", thisJar, "slf4j-simple", LAZY_OPTS),
+					new Setup("tomcat-juli-slf4j+slf4j-nop", thisJar, "slf4j-nop", null),
+					new Setup("tomcat-juli-slf4j+slf4j-nop+lazy", thisJar, "slf4j-nop", LAZY_OPTS));
+
+			try {
+				for (int run = -warmups; run < runs; run++) {
+					for (final Setup setup : setups) {
+						install(setup, installedJar, setenvSh, setenvBat);
+						final long[] result = startOnce(tomcat, setup.catalinaOpts);
+						if (run >= 0) {
+							int idx = 0;
+							for (final List<Long> values : setup.results.values()) {
+								if (result[idx] >= 0) {
+									values.add(result[idx]);
+								}
+								idx++;
+							}
+						}
+					}
+				}
+			} finally {
+				Files.copy(thisJar.toPath(), installedJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				Files.move(backupDir.resolve(setenvSh.getName()), setenvSh.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				Files.move(backupDir.resolve(setenvBat.getName()), setenvBat.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				Files.delete(thisJar.toPath());
+				Files.delete(backupDir);
+			}
+
+			final String json = toJson(runs, setups);
+			final File output = new File("target/startup-benchmark.json");
+			Files.write(output.toPath(), json.getBytes(StandardCharsets.UTF_8));
+			System.out.println("Startup benchmark results written to " + output.getAbsolutePath() + ":\n" + json);
+		}
+	}
+
+	private static void install(final Setup setup, final File installedJar, final File setenvSh, final File setenvBat) throws IOException {
+		Files.copy(setup.juliJar.toPath(), installedJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		if (setup.binding == null) {
+			Files.write(setenvSh.toPath(), new byte[0]);
+			Files.write(setenvBat.toPath(), new byte[0]);
+		} else {
+			Files.write(setenvSh.toPath(), ("CLASSPATH=$CLASSPATH:$CATALINA_HOME/bin/slf4j-api.jar:$CATALINA_HOME/bin/" + setup.binding + ".jar")
+					.getBytes(StandardCharsets.UTF_8));
+			Files.write(setenvBat.toPath(), ("set \"CLASSPATH=%CLASSPATH%;%CATALINA_HOME%\\bin\\slf4j-api.jar;%CATALINA_HOME%\\bin\\" + setup.binding + ".jar\"")
+					.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * @return ready millis, reported startup millis and loaded classes, -1
+	 *         for values not available
+	 */
+	private static long[] startOnce(final ItestTomcat tomcat, final String setupOpts) throws IOException, CmdException, InterruptedException {
+		final boolean java8 = System.getProperty("java.specification.version").startsWith("1.");
+		final Path classLog = Files.createTempFile("class-load", ".log");
+		try {
+			String catalinaOpts;
+			if (java8) {
+				catalinaOpts = "-verbose:class";
+			} else {
+				catalinaOpts = "-Xlog:class+load=info:file=" + classLog.toAbsolutePath();
+			}
+			if (setupOpts != null) {
+				catalinaOpts += " " + setupOpts;
+			}
+			final String extraOpts = System.getProperty("itest.catalinaOpts");
+			if (extraOpts != null) {
+				catalinaOpts += " " + extraOpts;
+			}
+
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final long start = System.nanoTime();
+			final Cmd cmd = tomcat.start(out, catalinaOpts);
+			try {
+				if (!tomcat.awaitHttp(cmd, STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+					System.err.println("Tomcat output:\n" + out.toString());
+					Assert.fail("Tomcat did not answer HTTP requests within " + STARTUP_TIMEOUT_SECONDS + " seconds");
+				}
+				final long readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+				final String output = out.toString();
+				final Matcher m = STARTUP_PATTERN.matcher(output);
+				final long reportedStartupMillis = m.find() ? Long.parseLong(m.group(1)) : -1;
+
+				final long loadedClasses;
+				if (java8) {
+					loadedClasses = countLines(Arrays.asList(output.split("\r?\n")), "[Loaded ");
+				} else {
+					loadedClasses = countLines(Files.readAllLines(classLog, StandardCharsets.UTF_8), "");
+				}
+
+				return new long[] { readyMillis, reportedStartupMillis, loadedClasses };
+			} finally {
+				cmd.destroyForcibly();
+				try {
+					cmd.waitFor();
+				} catch (final CmdException e) {
+					// expected after destroy
+				}
+			}
+		} finally {
+			Files.deleteIfExists(classLog);
+		}
+	}
+
+	private static long countLines(final List<String> lines, final String prefix) {
+		return lines.stream()
+				.filter(line -> !line.isEmpty() && line.startsWith(prefix))
+				.count();
+	}
+
+	private static String toJson(final int runs, final List<Setup> setups) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("{\n");
+		sb.append("  \"runs\": ").append(runs).append(",\n");
+		sb.append("  \"java.version\": \"").append(System.getProperty("java.version")).append("\",\n");
+		sb.append("  \"setups\": {");
+		for (int i = 0; i < setups.size(); i++) {
+			final Setup setup = setups.get(i);
+			sb.append(i == 0 ? "\n" : ",\n");
+			sb.append("    \"").append(setup.name).append("\": {");
+			int j = 0;
+			for (final Map.Entry<String, List<Long>> e : setup.results.entrySet()) {
+				sb.append(j++ == 0 ? "\n" : ",\n");
+				sb.append("      \"").append(e.getKey()).append("\": ").append(BenchmarkStats.summary(e.getValue()));
+			}
+			sb.append("\n    }");
+		}
+		sb.append("\n  }\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,304 @@
+package de.mklinger.tomcat.juli.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import de.mklinger.commons.exec.Cmd;
+import de.mklinger.commons.exec.CmdException;
+
+/**
+ * End-to-end throughput benchmark: Tomcat logs one INFO message per request
+ * to the {@link SlowLogger} stand-in backend, with different write
+ * latencies and a periodic stall, while local clients send requests.
+ * Reports requests per second and request latency percentiles to
+ * {@code target/throughput-benchmark.json}.
+ * <p>
+ * Not run by default, use {@code mvn verify -Pthroughputbenchmark}. Options
+ * of the bridge, e.g. asynchronous logging, can be given with
+ * {@code -Ditest.catalinaOpts=...} to compare them against this baseline.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class ThroughputBenchmarkIT {
+	private static final long STARTUP_TIMEOUT_SECONDS = 60;
+	private static final long WARMUP_SECONDS = 3;
+	private static final String WEBAPP_NAME = "bench";
+	private static final String BACKEND_JAR_NAME = "slf4j-slow.jar";
+
+	private static final String BINDER_SOURCE = ""
+			+ "package org.slf4j.impl;\n"
+			+ "public class StaticLoggerBinder implements org.slf4j.spi.LoggerFactoryBinder {\n"
+			+ "	public static String REQUESTED_API_VERSION = \"1.6.99\";\n"
+			+ "	private static final StaticLoggerBinder SINGLETON = new StaticLoggerBinder();\n"
+			+ "	private final org.slf4j.ILoggerFactory loggerFactory = new " + SlowLoggerFactory.class.getName() + "();\n"
+			+ "	public static StaticLoggerBinder getSingleton() { return SINGLETON; }\n"
+			+ "	public org.slf4j.ILoggerFactory getLoggerFactory() { return loggerFactory; }\n"
+			+ "	public String getLoggerFactoryClassStr() { return \"" + SlowLoggerFactory.class.getName() + "\"; }\n"
+			+ "}\n";
+
+	private static final String JSP_SOURCE = ""
+			+ "<%@ page import=\"org.apache.juli.logging.Log, org.apache.juli.logging.LogFactory\" %>"
+			+ "<%! private static final Log log = LogFactory.getLog(\"bench\"); %>"
+			+ "<% log.info(\"Handled request \" + request.getRequestURI() + \" from \" + request.getRemoteAddr()); %>"
+			+ "OK\n";
+
+	private static class Scenario {
+		final String name;
+		final String catalinaOpts;
+
+		Scenario(final String name, final String catalinaOpts) {
+			this.name = name;
+			this.catalinaOpts = catalinaOpts;
+		}
+	}
+
+	private static class Result {
+		final List<Long> latencyMicros = new ArrayList<>();
+		long errors;
+		long nanos;
+	}
+
+	@Test
+	public void test() throws IOException, CmdException, InterruptedException, URISyntaxException {
+		final int threads = Integer.getInteger("itest.throughputBenchmark.threads", 8);
+		final int seconds = Integer.getInteger("itest.throughputBenchmark.seconds", 10);
+
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		Assume.assumeNotNull(compiler);
+
+		final List<Scenario> scenarios = Arrays.asList(
+				new Scenario("latency-0ms", "-D" + SlowLogger.LATENCY_PROPERTY + "=0"),
+				new Scenario("latency-1ms", "-D" + SlowLogger.LATENCY_PROPERTY + "=1"),
+				new Scenario("latency-10ms", "-D" + SlowLogger.LATENCY_PROPERTY + "=10"),
+				new Scenario("stall-500ms-every-2s", "-D" + SlowLogger.STALL_INTERVAL_PROPERTY + "=2000 -D" + SlowLogger.STALL_PROPERTY + "=500"));
+
+		final Map<Scenario, Result> results = new LinkedHashMap<>();
+
+		try (ItestTomcat tomcat = new ItestTomcat()) {
+			final File binDir = tomcat.getBinDir();
+			final File setenvSh = new File(binDir, "setenv.sh");
+			final File setenvBat = new File(binDir, "setenv.bat");
+			final File backendJar = new File(binDir, BACKEND_JAR_NAME);
+			final File webappDir = new File(new File(tomcat.getCatalinaHome(), "webapps"), WEBAPP_NAME);
+
+			final Path backupDir = Files.createTempDirectory("throughput-benchmark");
+			Files.copy(setenvSh.toPath(), backupDir.resolve(setenvSh.getName()));
+			Files.copy(setenvBat.toPath(), backupDir.resolve(setenvBat.getName()));
+			try {
+				buildBackendJar(compiler, new File(binDir, "slf4j-api.jar"), backendJar);
+				Files.write(setenvSh.toPath(), ("CLASSPATH=$CLASSPATH:$CATALINA_HOME/bin/slf4j-api.jar:$CATALINA_HOME/bin/" + BACKEND_JAR_NAME)
+						.getBytes(StandardCharsets.UTF_8));
+				Files.write(setenvBat.toPath(), ("set \"CLASSPATH=%CLASSPATH%;%CATALINA_HOME%\\bin\\slf4j-api.jar;%CATALINA_HOME%\\bin\\" + BACKEND_JAR_NAME + "\"")
+						.getBytes(StandardCharsets.UTF_8));
+				Files.createDirectories(webappDir.toPath());
+				Files.write(new File(webappDir, "index.jsp").toPath(), JSP_SOURCE.getBytes(StandardCharsets.UTF_8));
+
+				for (final Scenario scenario : scenarios) {
+					results.put(scenario, runScenario(tomcat, scenario, threads, seconds));
+				}
+			} finally {
+				Files.move(backupDir.resolve(setenvSh.getName()), setenvSh.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				Files.move(backupDir.resolve(setenvBat.getName()), setenvBat.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				Files.delete(backupDir);
+				Files.deleteIfExists(backendJar.toPath());
+				deleteRecursively(webappDir.toPath());
+			}
+		}
+
+		final String json = toJson(threads, seconds, results);
+		final File output = new File("target/throughput-benchmark.json");
+		Files.write(output.toPath(), json.getBytes(StandardCharsets.UTF_8));
+		System.out.println("Throughput benchmark results written to " + output.getAbsolutePath() + ":\n" + json);
+	}
+
+	private static Result runScenario(final ItestTomcat tomcat, final Scenario scenario, final int threads, final int seconds) throws CmdException, InterruptedException, IOException {
+		String catalinaOpts = scenario.catalinaOpts;
+		final String extraOpts = System.getProperty("itest.catalinaOpts");
+		if (extraOpts != null) {
+			catalinaOpts += " " + extraOpts;
+		}
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final Cmd cmd = tomcat.start(out, catalinaOpts);
+		try {
+			if (!tomcat.awaitHttp(cmd, STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				System.err.println("Tomcat output:\n" + out.toString());
+				Assert.fail("Tomcat did not answer HTTP requests within " + STARTUP_TIMEOUT_SECONDS + " seconds");
+			}
+			final URL url = new URL("http://localhost:" + tomcat.getHttpPort() + "/" + WEBAPP_NAME + "/");
+			load(url, threads, WARMUP_SECONDS);
+			final Result result = load(url, threads, seconds);
+			System.out.println(scenario.name + ": " + format(result));
+			return result;
+		} finally {
+			cmd.destroyForcibly();
+			try {
+				cmd.waitFor();
+			} catch (final CmdException e) {
+				// expected after destroy
+			}
+		}
+	}
+
+	private static Result load(final URL url, final int threads, final long seconds) throws InterruptedException {
+		final long start = System.nanoTime();
+		final long end = start + TimeUnit.SECONDS.toNanos(seconds);
+		final LongAdder errors = new LongAdder();
+		final List<List<Long>> latencies = new ArrayList<>();
+		final List<Thread> clients = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			final List<Long> threadLatencies = new ArrayList<>();
+			latencies.add(threadLatencies);
+			final Thread client = new Thread(() -> {
+				final byte[] buffer = new byte[4096];
+				long requestStart;
+				while ((requestStart = System.nanoTime()) - end < 0) {
+					if (!request(url, buffer)) {
+						errors.increment();
+					}
+					threadLatencies.add(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - requestStart));
+				}
+			}, "throughput-benchmark-client-" + i);
+			client.start();
+			clients.add(client);
+		}
+		for (final Thread client : clients) {
+			client.join();
+		}
+
+		final Result result = new Result();
+		result.nanos = System.nanoTime() - start;
+		result.errors = errors.sum();
+		latencies.forEach(result.latencyMicros::addAll);
+		return result;
+	}
+
+	private static boolean request(final URL url, final byte[] buffer) {
+		try {
+			final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			final int responseCode = connection.getResponseCode();
+			try (InputStream in = responseCode < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+				if (in != null) {
+					while (in.read(buffer) != -1) {
+						// drain to allow connection reuse
+					}
+				}
+			}
+			return responseCode == 200;
+		} catch (final IOException e) {
+			return false;
+		}
+	}
+
+	private static void buildBackendJar(final JavaCompiler compiler, final File slf4jApiJar, final File jarFile) throws IOException, URISyntaxException {
+		final Path testClasses = Paths.get(SlowLogger.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		final Path buildDir = Files.createTempDirectory("slf4j-slow");
+		try {
+			final Path binderSource = buildDir.resolve("StaticLoggerBinder.java");
+			Files.write(binderSource, BINDER_SOURCE.getBytes(StandardCharsets.UTF_8));
+			final int exitCode = compiler.run(null, null, null,
+					"-d", buildDir.toString(),
+					"-cp", testClasses + File.pathSeparator + slf4jApiJar.getAbsolutePath(),
+					binderSource.toString());
+			Assert.assertEquals("Compiling StaticLoggerBinder failed", 0, exitCode);
+
+			final Path packageDir = testClasses.resolve(SlowLogger.class.getPackage().getName().replace('.', '/'));
+			final List<Path> backendClasses;
+			try (Stream<Path> files = Files.list(packageDir)) {
+				backendClasses = files
+						.filter(file -> file.getFileName().toString().startsWith("SlowLogger")
+								|| file.getFileName().toString().startsWith("RecordingLogger"))
+						.collect(Collectors.toList());
+			}
+
+			try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jarFile.toPath()))) {
+				addJarEntry(out, buildDir, buildDir.resolve("org/slf4j/impl/StaticLoggerBinder.class"));
+				for (final Path backendClass : backendClasses) {
+					addJarEntry(out, testClasses, backendClass);
+				}
+			}
+		} finally {
+			deleteRecursively(buildDir);
+		}
+	}
+
+	private static void addJarEntry(final JarOutputStream out, final Path baseDir, final Path file) throws IOException {
+		out.putNextEntry(new JarEntry(baseDir.relativize(file).toString().replace(File.separatorChar, '/')));
+		Files.copy(file, (OutputStream) out);
+		out.closeEntry();
+	}
+
+	private static void deleteRecursively(final Path dir) throws IOException {
+		if (!Files.exists(dir)) {
+			return;
+		}
+		try (Stream<Path> files = Files.walk(dir)) {
+			for (final Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	private static double requestsPerSecond(final Result result) {
+		return result.latencyMicros.size() / (result.nanos / 1_000_000_000.0);
+	}
+
+	private static String format(final Result result) {
+		return String.format(Locale.ROOT, "%.1f requests/s, %d errors, latency %s us",
+				requestsPerSecond(result), result.errors, BenchmarkStats.summary(result.latencyMicros));
+	}
+
+	private static String toJson(final int threads, final int seconds, final Map<Scenario, Result> results) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("{\n");
+		sb.append("  \"threads\": ").append(threads).append(",\n");
+		sb.append("  \"seconds\": ").append(seconds).append(",\n");
+		sb.append("  \"catalinaOpts\": \"").append(System.getProperty("itest.catalinaOpts", "").replace("\"", "\\\"")).append("\",\n");
+		sb.append("  \"scenarios\": {");
+		int i = 0;
+		for (final Map.Entry<Scenario, Result> e : results.entrySet()) {
+			final Result result = e.getValue();
+			sb.append(i++ == 0 ? "\n" : ",\n");
+			sb.append("    \"").append(e.getKey().name).append("\": {\n");
+			sb.append("      \"requests\": ").append(result.latencyMicros.size()).append(",\n");
+			sb.append("      \"errors\": ").append(result.errors).append(",\n");
+			sb.append(String.format(Locale.ROOT, "      \"requestsPerSecond\": %.1f,\n", requestsPerSecond(result)));
+			sb.append("      \"latencyMicros\": ").append(BenchmarkStats.summary(result.latencyMicros)).append("\n");
+			sb.append("    }");
+		}
+		sb.append("\n  }\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,138 @@
+package org.apache.juli.logging;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.juli.logging.AsyncDispatcher.OverflowPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.mklinger.tomcat.juli.logging.RecordingLogger;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class AsyncDispatcherTest {
+	@Test
+	public void testOrderAndShutdown() {
+		RecordingLogger delegate = new RecordingLogger("test.async", RecordingLogger.TRACE);
+		AsyncDispatcher dispatcher = new AsyncDispatcher(16, OverflowPolicy.BLOCK, 5000);
+		Log log = new DirectSlf4jLog(delegate.getName(), delegate, dispatcher);
+
+		for (int i = 0; i < 1000; i++) {
+			log.debug(i);
+		}
+		dispatcher.shutdown();
+
+		List<RecordingLogger.Event> events = delegate.getEvents();
+		Assert.assertEquals(1000, events.size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(String.valueOf(i), events.get(i).getMessage());
+		}
+	}
+
+	@Test
+	public void testNoEventsLostOnShutdown() throws InterruptedException {
+		RecordingLogger delegate = new RecordingLogger("test.async", RecordingLogger.TRACE);
+		AsyncDispatcher dispatcher = new AsyncDispatcher(16, OverflowPolicy.BLOCK, 5000);
+		Log log = new DirectSlf4jLog(delegate.getName(), delegate, dispatcher);
+
+		Thread[] producers = new Thread[4];
+		for (int i = 0; i < producers.length; i++) {
+			producers[i] = new Thread(() -> {
+				for (int j = 0; j < 1000; j++) {
+					log.debug(j);
+				}
+			});
+			producers[i].start();
+		}
+		dispatcher.shutdown();
+		for (Thread producer : producers) {
+			producer.join();
+		}
+
+		Assert.assertEquals(4000, delegate.getEvents().size());
+	}
+
+	@Test
+	public void testBackendError() {
+		RecordingLogger delegate = new RecordingLogger("test.async", RecordingLogger.TRACE) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void debug(String msg, Throwable t) {
+				if ("0".equals(msg)) {
+					throw new AssertionError("backend failure");
+				}
+				super.debug(msg, t);
+			}
+		};
+		AsyncDispatcher dispatcher = new AsyncDispatcher(4, OverflowPolicy.BLOCK, 5000);
+		Log log = new DirectSlf4jLog(delegate.getName(), delegate, dispatcher);
+
+		// the consumer survives the Error, so producers do not block forever
+		for (int i = 0; i < 100; i++) {
+			log.debug(i);
+		}
+		dispatcher.shutdown();
+
+		Assert.assertEquals(99, delegate.getEvents().size());
+	}
+
+	@Test
+	public void testErrorFlushes() {
+		RecordingLogger delegate = new RecordingLogger("test.async", RecordingLogger.TRACE);
+		AsyncDispatcher dispatcher = new AsyncDispatcher(1024, OverflowPolicy.BLOCK, 5000);
+		try {
+			Log log = new DirectSlf4jLog(delegate.getName(), delegate, dispatcher);
+
+			for (int i = 0; i < 100; i++) {
+				log.info(i);
+			}
+			log.error("error");
+
+			List<RecordingLogger.Event> events = delegate.getEvents();
+			Assert.assertEquals(101, events.size());
+			Assert.assertEquals("error", events.get(100).getMessage());
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testDropBelowWarn() throws InterruptedException {
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch unblock = new CountDownLatch(1);
+		RecordingLogger delegate = new RecordingLogger("test.async", RecordingLogger.TRACE) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void info(String msg, Throwable t) {
+				blocked.countDown();
+				try {
+					unblock.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.info(msg, t);
+			}
+		};
+		AsyncDispatcher dispatcher = new AsyncDispatcher(4, OverflowPolicy.DROP_BELOW_WARN, 5000);
+		try {
+			Log log = new DirectSlf4jLog(delegate.getName(), delegate, dispatcher);
+
+			log.info("blocking");
+			Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+			for (int i = 0; i < 10; i++) {
+				log.debug(i);
+			}
+			// the slot of the blocking event is not released until it has been written
+			Assert.assertEquals(7, dispatcher.getDroppedCount());
+		} finally {
+			unblock.countDown();
+			dispatcher.shutdown();
+		}
+		Assert.assertEquals(4, delegate.getEvents().size());
+	}
+}
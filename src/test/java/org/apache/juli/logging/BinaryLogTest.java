@@ -0,0 +1,137 @@
+package org.apache.juli.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.mklinger.tomcat.juli.logging.RecordingLogger;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class BinaryLogTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		File file = new File(folder.getRoot(), "events.bin");
+		BinaryLogWriter writer = new BinaryLogWriter(file, 2, 1000, null);
+
+		String[] messages = {
+				"Request 1 took 25 ms",
+				"Request 2 took 3 ms",
+				"Port 08080 and 123456789012345678901234567890 are kept as text",
+				"Template \0 limit reached, inline -7",
+				"Error",
+		};
+		for (int i = 0; i < messages.length - 1; i++) {
+			writer.write("org.apache.coyote", DirectSlf4jLog.INFO, messages[i], null);
+		}
+		writer.write("org.apache.coyote.ajp", DirectSlf4jLog.ERROR, messages[messages.length - 1], new IllegalStateException("test"));
+		writer.close();
+
+		String[] lines = decode(file, false).split("\r?\n");
+		for (int i = 0; i < messages.length - 1; i++) {
+			Assert.assertTrue(lines[i], lines[i].endsWith(" INFO org.apache.coyote - " + messages[i]));
+		}
+		Assert.assertTrue(lines[4], lines[4].endsWith(" ERROR org.apache.coyote.ajp - Error"));
+		Assert.assertEquals("java.lang.IllegalStateException: test", lines[5]);
+
+		String json = decode(file, true).split("\r?\n")[4];
+		Assert.assertTrue(json, json.matches("\\{\"timestamp\":\"[^\"]+\",\"level\":\"ERROR\",\"logger\":\"org.apache.coyote.ajp\",\"message\":\"Error\","
+				+ "\"stackTrace\":\"java.lang.IllegalStateException: test\\\\n.*\"\\}"));
+	}
+
+	@Test
+	public void testFlushAndClose() throws IOException {
+		File file = new File(folder.getRoot(), "events.bin");
+		BinaryLogWriter writer = new BinaryLogWriter(file, 10, 1000, null);
+		RecordingLogger delegate = new RecordingLogger("test.binary", RecordingLogger.INFO);
+		DirectSlf4jLog log = new DirectSlf4jLog(delegate);
+		log.setBinaryLog(writer);
+
+		log.info("buffered");
+		Assert.assertEquals(BinaryLogWriter.MAGIC.length, file.length());
+		// no further event needed
+		writer.flushIfDue(System.nanoTime() + TimeUnit.SECONDS.toNanos(2));
+		Assert.assertTrue(decode(file, false).contains(" INFO test.binary - buffered"));
+		Assert.assertTrue(delegate.getEvents().isEmpty());
+
+		// as on release, while the instance is still in use
+		writer.close();
+		log.info("after close");
+		Assert.assertEquals(1, delegate.getEvents().size());
+		Assert.assertEquals("after close", delegate.getEvents().get(0).getMessage());
+	}
+
+	@Test
+	public void testWriteOnFlusher() throws IOException {
+		File file = new File(folder.getRoot(), "events.bin");
+		List<Runnable> tasks = new ArrayList<>();
+		BinaryLogWriter writer = new BinaryLogWriter(file, 10, 1000, tasks::add);
+
+		writer.write("test.binary", DirectSlf4jLog.ERROR, "first", null);
+		writer.write("test.binary", DirectSlf4jLog.ERROR, "second", null);
+		// not written by the logging thread, one request for both
+		Assert.assertEquals(BinaryLogWriter.MAGIC.length, file.length());
+		Assert.assertEquals(1, tasks.size());
+
+		tasks.get(0).run();
+		String decoded = decode(file, false);
+		Assert.assertTrue(decoded, decoded.contains(" ERROR test.binary - first"));
+		Assert.assertTrue(decoded, decoded.contains(" ERROR test.binary - second"));
+		writer.close();
+	}
+
+	@Test
+	public void testConfigurationChange() throws IOException {
+		File file = new File(folder.getRoot(), "events.bin");
+		LogFactory.getFactory().setAttribute(BinaryLogWriter.BINARY_PROPERTY, file.getAbsolutePath());
+		LogFactory.getFactory().setAttribute(BinaryLogWriter.LOGGERS_PROPERTY, "test.other");
+		try {
+			Log log = LogFactory.getLog("test.reconfigured");
+			log.error("before");
+
+			// applies to the existing instance
+			LogFactory.getFactory().setAttribute(BinaryLogWriter.LOGGERS_PROPERTY, "test.other,test.reconfigured,");
+			LogFactory.getFactory().setAttribute(RateLimits.RATE_LIMITS_PROPERTY, "test.reconfigured@WARN=1");
+			log.error("after");
+			for (int i = 0; i < 3; i++) {
+				log.warn("limited");
+			}
+			// reports the suppressed events and closes the writer
+			LogFactory.releaseAll();
+
+			String decoded = decode(file, false);
+			Assert.assertFalse(decoded, decoded.contains(" - before"));
+			Assert.assertTrue(decoded, decoded.contains(" ERROR test.reconfigured - after"));
+			Assert.assertTrue(decoded, decoded.contains(" WARN test.reconfigured - Suppressed 2 WARN messages from test.reconfigured"));
+		} finally {
+			LogFactory.getFactory().removeAttribute(BinaryLogWriter.BINARY_PROPERTY);
+			LogFactory.getFactory().removeAttribute(BinaryLogWriter.LOGGERS_PROPERTY);
+			LogFactory.getFactory().removeAttribute(RateLimits.RATE_LIMITS_PROPERTY);
+			LogFactory.releaseAll();
+		}
+	}
+
+	private static String decode(File file, boolean json) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = new FileInputStream(file)) {
+			BinaryLogDecoder.decode(in, new PrintStream(out, true, "UTF-8"), json);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,79 @@
+package org.apache.juli.logging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class BoundedMessageRendererTest {
+	private final BoundedMessageRenderer renderer = new BoundedMessageRenderer(10);
+
+	@Test
+	public void testShortMessages() {
+		Assert.assertEquals("null", renderer.render(null));
+		Assert.assertEquals("0123456789", renderer.render("0123456789"));
+		Assert.assertEquals("[a, b]", renderer.render(Arrays.asList("a", "b")));
+		Map<String, Integer> map = new LinkedHashMap<>();
+		map.put("a", 1);
+		Assert.assertEquals("{a=1}", renderer.render(map));
+		Assert.assertEquals("42", renderer.render(42));
+	}
+
+	@Test
+	public void testTruncation() {
+		Assert.assertEquals("0123456789...[truncated]", renderer.render("0123456789x"));
+		Assert.assertEquals("0123456789...[truncated]", renderer.render(new StringBuilder("0123456789x")));
+
+		CountingList list = new CountingList();
+		for (int i = 0; i < 1000; i++) {
+			list.add(i);
+		}
+		Assert.assertEquals("[0, 1, 2, ...[truncated]", renderer.render(list));
+		Assert.assertTrue(list.iterated < 10);
+	}
+
+	@Test
+	public void testFormattable() {
+		Formattable formattable = new Formattable() {
+			@Override
+			public void formatTo(Formatter formatter, int flags, int width, int precision) {
+				for (int i = 0; i < 1000; i++) {
+					formatter.format("%d", i % 10);
+				}
+				Assert.fail("Expected early stop");
+			}
+		};
+		Assert.assertEquals("0123456789...[truncated]", renderer.render(formattable));
+	}
+
+	private static class CountingList extends ArrayList<Integer> {
+		private static final long serialVersionUID = 1L;
+		int iterated;
+
+		@Override
+		public Iterator<Integer> iterator() {
+			Iterator<Integer> it = super.iterator();
+			return new Iterator<Integer>() {
+				@Override
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+
+				@Override
+				public Integer next() {
+					iterated++;
+					return it.next();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package org.apache.juli.logging;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.mklinger.tomcat.juli.logging.RecordingLogger;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class DeferredMessagesTest {
+	@Test
+	public void testImmutableTypes() {
+		DeferredMessages deferredMessages = new DeferredMessages(DeferredMessages.Mode.IMMUTABLE,
+				Collections.singleton(DeferredMessagesTest.class.getName()));
+		Assert.assertTrue(deferredMessages.canDefer(42));
+		Assert.assertTrue(deferredMessages.canDefer(Instant.now()));
+		Assert.assertTrue(deferredMessages.canDefer(TimeUnit.SECONDS));
+		Assert.assertTrue(deferredMessages.canDefer(this));
+		Assert.assertFalse(deferredMessages.canDefer(new ArrayList<>()));
+		Assert.assertFalse(deferredMessages.canDefer(new StringBuilder()));
+	}
+
+	@Test
+	public void testDeferToBackend() {
+		LogFactory.getFactory().setAttribute(DeferredMessages.DEFER_PROPERTY, "ALL");
+		try {
+			// initializes the configuration
+			LogFactory.getLog("test.defer");
+
+			Object[] arguments = new Object[1];
+			RecordingLogger delegate = new RecordingLogger("test.defer", RecordingLogger.INFO) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public void info(String format, Object arg1, Object arg2) {
+					arguments[0] = arg1;
+					super.info(format, arg1, arg2);
+				}
+			};
+			Log log = new DirectSlf4jLog(delegate);
+
+			Object message = new StringBuilder("deferred");
+			log.info(message);
+			log.info("plain");
+
+			Assert.assertSame(message, arguments[0]);
+			Assert.assertEquals(2, delegate.getEvents().size());
+			Assert.assertEquals("deferred", delegate.getEvents().get(0).getMessage());
+			Assert.assertEquals("plain", delegate.getEvents().get(1).getMessage());
+		} finally {
+			LogFactory.getFactory().removeAttribute(DeferredMessages.DEFER_PROPERTY);
+			LogFactory.releaseAll();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package org.apache.juli.logging;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.mklinger.tomcat.juli.logging.RecordingLogger;
+import de.mklinger.tomcat.juli.logging.RecordingLogger.Event;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class FlightRecorderTest {
+	@Test
+	public void testFlushOnError() throws InterruptedException {
+		LogFactory.getFactory().setAttribute(FlightRecorder.SIZE_PROPERTY, "3");
+		try {
+			// initializes the configuration
+			LogFactory.getLog("test.recorder");
+
+			RecordingLogger delegate = new RecordingLogger("test.recorder", RecordingLogger.INFO);
+			Log log = new DirectSlf4jLog(delegate);
+			Assert.assertTrue(log.isDebugEnabled());
+
+			for (int i = 1; i <= 5; i++) {
+				log.debug("debug " + i);
+			}
+			log.info("info");
+			Thread other = new Thread(() -> log.debug("other thread"));
+			other.start();
+			other.join();
+			Assert.assertEquals(1, delegate.getEvents().size());
+
+			log.error("failed");
+			List<Event> events = delegate.getEvents();
+			Assert.assertEquals(5, events.size());
+			Assert.assertEquals("info", events.get(0).getMessage());
+			for (int i = 1; i <= 3; i++) {
+				Event event = events.get(i);
+				Assert.assertEquals(RecordingLogger.ERROR, event.getLevel());
+				Assert.assertTrue(event.getMessage(), event.getMessage().matches("\\[DEBUG [^\\]]+\\] debug " + (i + 2)));
+			}
+			Assert.assertEquals("failed", events.get(4).getMessage());
+
+			// recorded events are written only once
+			log.error("failed again");
+			Assert.assertEquals(6, delegate.getEvents().size());
+		} finally {
+			LogFactory.getFactory().removeAttribute(FlightRecorder.SIZE_PROPERTY);
+			LogFactory.releaseAll();
+		}
+	}
+
+	@Test
+	public void testRenderAtRecordTime() {
+		LogFactory.getFactory().setAttribute(FlightRecorder.SIZE_PROPERTY, "3");
+		try {
+			// initializes the configuration
+			LogFactory.getLog("test.recorder");
+
+			RecordingLogger delegate = new RecordingLogger("test.recorder", RecordingLogger.INFO);
+			Log log = new DirectSlf4jLog(delegate);
+
+			StringBuilder message = new StringBuilder("state at record time");
+			log.debug(message);
+			message.setLength(0);
+			message.append("state at flush time");
+			log.error("failed");
+			List<Event> events = delegate.getEvents();
+			Assert.assertEquals(2, events.size());
+			Assert.assertTrue(events.get(0).getMessage(), events.get(0).getMessage().endsWith("] state at record time"));
+
+			// release forgets recorded events
+			log.debug("debug");
+			LogFactory.release(Thread.currentThread().getContextClassLoader());
+			log.error("failed again");
+			Assert.assertEquals(3, delegate.getEvents().size());
+			Assert.assertEquals("failed again", delegate.getEvents().get(2).getMessage());
+		} finally {
+			LogFactory.getFactory().removeAttribute(FlightRecorder.SIZE_PROPERTY);
+			LogFactory.releaseAll();
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package org.apache.juli.logging;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class LatencyBreakerTest {
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void testOpenAndRecover() {
+		long start = System.nanoTime();
+		// threshold 10 ms, window of 4 slices of 100 ms
+		LatencyBreaker breaker = new LatencyBreaker(10, 400, 1);
+
+		for (int i = 0; i < 20; i++) {
+			breaker.record(SLOW, start);
+		}
+		Assert.assertFalse(breaker.isOpen());
+
+		breaker.record(SLOW, start + millis(150));
+		Assert.assertTrue(breaker.isOpen());
+		// written later by the housekeeping, not by the recording thread
+		Assert.assertTrue(breaker.pollNotice().startsWith("Logging backend is slow"));
+		Assert.assertNull(breaker.pollNotice());
+		Assert.assertTrue(breaker.shouldSample());
+
+		// slow samples are still in the window
+		breaker.shed(DirectSlf4jLog.INFO, start + millis(260));
+		Assert.assertTrue(breaker.isOpen());
+
+		long now = start + millis(260);
+		while (breaker.isOpen() && now - start < millis(2000)) {
+			now += millis(110);
+			breaker.record(FAST, now);
+		}
+		Assert.assertFalse(breaker.isOpen());
+		Assert.assertTrue(now - start > millis(400));
+		Assert.assertTrue(breaker.pollNotice().startsWith("Logging backend recovered"));
+	}
+
+	@Test
+	public void testFewSlowSamplesDoNotOpen() {
+		long start = System.nanoTime();
+		LatencyBreaker breaker = new LatencyBreaker(10, 400, 1);
+
+		for (int i = 0; i < 3; i++) {
+			breaker.record(SLOW, start);
+		}
+		breaker.record(FAST, start + millis(150));
+		Assert.assertFalse(breaker.isOpen());
+		Assert.assertNull(breaker.pollNotice());
+	}
+
+	private static long millis(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+}
@@ -0,0 +1,105 @@
+package org.apache.juli.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class LogJournalTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRing() throws IOException {
+		File file = new File(folder.getRoot(), "journal");
+		LogJournal journal = new LogJournal(file, 64 * 1024, LogJournal.Mode.INSTEAD);
+		int count = 10_000;
+		for (int i = 0; i < count; i++) {
+			journal.append("logger" + (i % 3), DirectSlf4jLog.INFO, "message " + i, null);
+		}
+		journal.append("logger.error", DirectSlf4jLog.ERROR, "failed", new IllegalStateException("test"));
+
+		List<LogJournalReader.Event> events = LogJournalReader.read(file);
+		// the ring holds about 1,400 events, all others were overwritten
+		Assert.assertTrue(events.size() > 1000 && events.size() < count);
+		int first = count - events.size() + 1;
+		for (int i = 0; i < events.size() - 1; i++) {
+			LogJournalReader.Event event = events.get(i);
+			Assert.assertEquals("message " + (first + i), event.message);
+			Assert.assertEquals("logger" + ((first + i) % 3), event.loggerName);
+			Assert.assertEquals(DirectSlf4jLog.INFO, event.level);
+		}
+		LogJournalReader.Event last = events.get(events.size() - 1);
+		Assert.assertEquals("logger.error", last.loggerName);
+		Assert.assertEquals(DirectSlf4jLog.ERROR, last.level);
+		Assert.assertTrue(last.message, last.message.startsWith("failed" + System.lineSeparator() + "java.lang.IllegalStateException: test"));
+	}
+
+	@Test
+	public void testRotateOncePerJvm() throws IOException {
+		File file = new File(folder.getRoot(), "journal");
+		LogJournal journal = new LogJournal(file, 64 * 1024, LogJournal.Mode.INSTEAD);
+		journal.append("logger", DirectSlf4jLog.INFO, "message", null);
+		// as left by a previous JVM
+		File previous = new File(folder.getRoot(), "previous");
+		Files.copy(file.toPath(), previous.toPath());
+
+		// the first journal for a file keeps the previous one
+		journal = new LogJournal(previous, 64 * 1024, LogJournal.Mode.INSTEAD);
+		Assert.assertTrue(LogJournalReader.read(previous).isEmpty());
+		File rotated = new File(folder.getRoot(), "previous.1");
+		Assert.assertEquals(1, LogJournalReader.read(rotated).size());
+
+		// later journals for the same file reuse it
+		journal.append("logger", DirectSlf4jLog.INFO, "message", null);
+		new LogJournal(previous, 64 * 1024, LogJournal.Mode.INSTEAD);
+		Assert.assertTrue(LogJournalReader.read(previous).isEmpty());
+		Assert.assertEquals(1, LogJournalReader.read(rotated).size());
+	}
+
+	@Test
+	public void testQuietLogger() throws IOException {
+		File file = new File(folder.getRoot(), "journal");
+		LogJournal journal = new LogJournal(file, 64 * 1024, LogJournal.Mode.INSTEAD);
+		journal.append("quiet", DirectSlf4jLog.INFO, "first", null);
+		for (int i = 0; i < 400; i++) {
+			journal.append("busy", DirectSlf4jLog.INFO, "message " + i, null);
+		}
+		journal.append("quiet", DirectSlf4jLog.INFO, "last", null);
+		// overwrites the first event of the quiet logger, but not the last
+		for (int i = 0; i < 1000; i++) {
+			journal.append("busy", DirectSlf4jLog.INFO, "message " + i, null);
+		}
+
+		List<LogJournalReader.Event> events = LogJournalReader.read(file);
+		Assert.assertFalse(events.stream().anyMatch(e -> e.message.equals("first")));
+		LogJournalReader.Event last = events.stream().filter(e -> e.message.equals("last")).findFirst().get();
+		Assert.assertEquals("quiet", last.loggerName);
+	}
+
+	@Test
+	public void testFullDictionary() throws IOException {
+		File file = new File(folder.getRoot(), "journal");
+		LogJournal journal = new LogJournal(file, 64 * 1024, LogJournal.Mode.INSTEAD);
+		// more loggers than fit into the dictionary
+		for (int i = 0; i < 200; i++) {
+			journal.append("org.apache.logger" + i, DirectSlf4jLog.WARN, "message " + i, null);
+		}
+
+		List<LogJournalReader.Event> events = LogJournalReader.read(file);
+		Assert.assertEquals(200, events.size());
+		for (int i = 0; i < 200; i++) {
+			Assert.assertEquals("org.apache.logger" + i, events.get(i).loggerName);
+			Assert.assertEquals("message " + i, events.get(i).message);
+			Assert.assertEquals(DirectSlf4jLog.WARN, events.get(i).level);
+		}
+	}
+}
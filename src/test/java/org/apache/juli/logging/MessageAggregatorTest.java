@@ -0,0 +1,116 @@
+package org.apache.juli.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.mklinger.tomcat.juli.logging.RecordingLogger;
+import de.mklinger.tomcat.juli.logging.RecordingLogger.Event;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class MessageAggregatorTest {
+	@Test
+	public void testSummaries() {
+		RecordingLogger delegate = new RecordingLogger("test.aggregate", RecordingLogger.INFO);
+		DirectSlf4jLog log = new DirectSlf4jLog(delegate);
+		log.setAggregator(new MessageAggregator(60_000, 10, 2));
+
+		for (int i = 0; i < 1500; i++) {
+			log.info("Connection reset " + i);
+		}
+		log.info("Timeout");
+		log.info("Socket closed");
+		log.debug("disabled");
+		Assert.assertTrue(delegate.getEvents().isEmpty());
+
+		// warnings and stack traces are not collapsed into counts
+		log.warn("Warning");
+		log.info("Failure", new IllegalStateException("test"));
+		Assert.assertEquals(2, delegate.getEvents().size());
+		Assert.assertNotNull(delegate.getEvents().get(1).getThrowable());
+
+		log.flushAggregator();
+		List<Event> events = delegate.getEvents();
+		Assert.assertEquals(5, events.size());
+		// order within a level is unspecified
+		String summaries = events.get(2).getMessage() + "\n" + events.get(3).getMessage() + "\n" + events.get(4).getMessage();
+		Assert.assertTrue(summaries, summaries.contains("Message \"Connection...\" occurred 1,500 times, first at "));
+		Assert.assertTrue(summaries, summaries.contains("Message \"Timeout\" occurred 1 time, first at "));
+		Assert.assertTrue(summaries, summaries.contains("Other messages occurred 1 time, first at "));
+		Assert.assertEquals(RecordingLogger.INFO, events.get(4).getLevel());
+
+		log.flushAggregator();
+		Assert.assertEquals(5, delegate.getEvents().size());
+	}
+
+	@Test
+	public void testBoundedRendering() {
+		RecordingLogger delegate = new RecordingLogger("test.aggregate", RecordingLogger.INFO);
+		DirectSlf4jLog log = new DirectSlf4jLog(delegate);
+		log.setAggregator(new MessageAggregator(60_000, 10, 10));
+
+		AtomicInteger rendered = new AtomicInteger();
+		List<Object> message = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			message.add(new Object() {
+				@Override
+				public String toString() {
+					rendered.incrementAndGet();
+					return "element";
+				}
+			});
+		}
+		log.info(message);
+		Assert.assertTrue("Rendered elements: " + rendered.get(), rendered.get() < 10);
+
+		log.flushAggregator();
+		Assert.assertTrue(delegate.getEvents().get(0).getMessage().startsWith("Message \"[element, ...\" occurred 1 time, "));
+	}
+
+	@Test
+	public void testMaxKeysConcurrently() throws InterruptedException {
+		RecordingLogger delegate = new RecordingLogger("test.aggregate", RecordingLogger.INFO);
+		DirectSlf4jLog log = new DirectSlf4jLog(delegate);
+		log.setAggregator(new MessageAggregator(60_000, 80, 5));
+
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			int offset = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					log.info("Message " + (i * threads.length + offset));
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		log.flushAggregator();
+		// five keys and the other messages
+		Assert.assertEquals(6, delegate.getEvents().size());
+	}
+
+	@Test
+	public void testQuietLogger() {
+		RecordingLogger delegate = new RecordingLogger("test.aggregate", RecordingLogger.INFO);
+		DirectSlf4jLog log = new DirectSlf4jLog(delegate);
+		log.setAggregator(new MessageAggregator(1000, 80, 10));
+
+		log.info("Connection reset");
+		log.housekeeping(System.nanoTime());
+		Assert.assertTrue(delegate.getEvents().isEmpty());
+
+		// no further event ends the interval
+		log.housekeeping(System.nanoTime() + TimeUnit.SECONDS.toNanos(2));
+		Assert.assertEquals(1, delegate.getEvents().size());
+		Assert.assertTrue(delegate.getEvents().get(0).getMessage().startsWith("Message \"Connection reset\" occurred 1 time, "));
+	}
+}
@@ -0,0 +1,76 @@
+package org.apache.juli.logging;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class NameTrieTest {
+	private static final String[] NAMES = {
+			"",
+			"org",
+			"org.apache",
+			"org.apache.catalina",
+			"org.apache.catalina.core.StandardContext",
+			"org.apache.catalina.core.StandardContext.x",
+			"org.apache.catalinax",
+			"org.apache.coyote.http11.Http11Processor",
+			"org.apache.coyote.http11",
+			"org.apache.tomcat.util.net.NioEndpoint",
+			"org.apache.tomcat.util.net.NioEndpoint.",
+			"com.example",
+			"a.",
+	};
+
+	@Test
+	public void testLongestPrefix() {
+		Map<String, Integer> values = new HashMap<>();
+		values.put("org.apache.catalina", 1);
+		values.put("org.apache.catalina.core.StandardContext", 2);
+		values.put("org.apache.coyote.http11", 3);
+		values.put("org.apache.tomcat.util.net.NioEndpoint.", 4);
+		values.put("org.apache", 5);
+		values.put("a.", 6);
+		assertResolves(values);
+
+		values.put("", 7);
+		assertResolves(values);
+
+		Assert.assertTrue(NameTrie.of(new HashMap<>()).isEmpty());
+		Assert.assertNull(NameTrie.of(new HashMap<>()).resolve("org.apache"));
+	}
+
+	@Test
+	public void testPrefixesWithEmptyEntries() {
+		NameTrie<Boolean> trie = NameTrie.ofPrefixes("org.apache.coyote, ,org.apache.catalina,");
+		Assert.assertEquals(Boolean.TRUE, trie.resolve("org.apache.coyote.http11"));
+		Assert.assertEquals(Boolean.TRUE, trie.resolve("org.apache.catalina"));
+		// an empty entry would match all names
+		Assert.assertNull(trie.resolve("com.example"));
+		Assert.assertTrue(NameTrie.ofPrefixes(",").isEmpty());
+	}
+
+	private static void assertResolves(Map<String, Integer> values) {
+		NameTrie<Integer> trie = NameTrie.of(values);
+		for (String name : NAMES) {
+			Assert.assertEquals(name, resolve(values, name), trie.resolve(name));
+		}
+	}
+
+	/** Reference implementation. */
+	private static Integer resolve(Map<String, Integer> values, String name) {
+		String bestPrefix = null;
+		for (String prefix : values.keySet()) {
+			boolean matches = prefix.isEmpty()
+					|| (name.startsWith(prefix) && (name.length() == prefix.length() || name.charAt(prefix.length()) == '.'));
+			if (matches && (bestPrefix == null || prefix.length() > bestPrefix.length())) {
+				bestPrefix = prefix;
+			}
+		}
+		return bestPrefix == null ? null : values.get(bestPrefix);
+	}
+}
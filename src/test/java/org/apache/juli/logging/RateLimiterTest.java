@@ -0,0 +1,122 @@
+package org.apache.juli.logging;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.mklinger.tomcat.juli.logging.RecordingLogger;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class RateLimiterTest {
+	@Test
+	public void testBucket() {
+		RateLimiter rateLimiter = new RateLimiter(10, 1000);
+		long now = System.nanoTime();
+
+		int admitted = 0;
+		for (int i = 0; i < 15; i++) {
+			if (rateLimiter.tryAcquire(now)) {
+				admitted++;
+			}
+		}
+		Assert.assertEquals(10, admitted);
+		Assert.assertEquals(0, rateLimiter.takeSuppressed(now));
+
+		// refilled by one token per 100 ms
+		now += TimeUnit.MILLISECONDS.toNanos(250);
+		Assert.assertTrue(rateLimiter.tryAcquire(now));
+		Assert.assertTrue(rateLimiter.tryAcquire(now));
+		Assert.assertFalse(rateLimiter.tryAcquire(now));
+
+		now += TimeUnit.MILLISECONDS.toNanos(1000);
+		Assert.assertEquals(6, rateLimiter.takeSuppressed(now));
+		Assert.assertEquals(0, rateLimiter.takeSuppressed(now));
+	}
+
+	@Test
+	public void testRules() {
+		TreeMap<String, int[]> rates = new TreeMap<>();
+		RateLimits.addRule(rates, "org.apache", "100");
+		RateLimits.addRule(rates, "org.apache.coyote@WARN", "5");
+		RateLimits rateLimits = new RateLimits(rates, 1000);
+
+		Assert.assertNull(rateLimits.createLimiters("com.example"));
+		Assert.assertNull(rateLimits.createLimiters("org.apachex"));
+
+		RateLimiter[] limiters = rateLimits.createLimiters("org.apache.coyote.http11.Http11Processor");
+		for (RateLimiter limiter : limiters) {
+			Assert.assertNotNull(limiter);
+		}
+
+		RecordingLogger delegate = new RecordingLogger("test.rateLimit", RecordingLogger.INFO);
+		DirectSlf4jLog log = new DirectSlf4jLog(delegate);
+		log.setRateLimiters(limiters);
+		for (int i = 0; i < 20; i++) {
+			log.warn("warn");
+			log.info("info");
+		}
+		List<RecordingLogger.Event> events = delegate.getEvents();
+		Assert.assertEquals(5, events.stream().filter(e -> e.getLevel() == RecordingLogger.WARN).count());
+		Assert.assertEquals(20, events.stream().filter(e -> e.getLevel() == RecordingLogger.INFO).count());
+	}
+
+	@Test
+	public void testLevelRulePrecedence() {
+		TreeMap<String, int[]> catchAllFirst = new TreeMap<>();
+		RateLimits.addRule(catchAllFirst, "org.apache", "100");
+		RateLimits.addRule(catchAllFirst, "org.apache@WARN", "5");
+		TreeMap<String, int[]> levelFirst = new TreeMap<>();
+		RateLimits.addRule(levelFirst, "org.apache@WARN", "5");
+		RateLimits.addRule(levelFirst, "org.apache", "100");
+
+		for (TreeMap<String, int[]> rates : Arrays.asList(catchAllFirst, levelFirst)) {
+			RateLimiter[] limiters = new RateLimits(rates, 1000).createLimiters("org.apache.catalina.Server");
+			Assert.assertEquals(5, burst(limiters[LoggerStats.levelIndex(DirectSlf4jLog.WARN)]));
+			Assert.assertEquals(100, burst(limiters[LoggerStats.levelIndex(DirectSlf4jLog.INFO)]));
+		}
+	}
+
+	private static int burst(RateLimiter rateLimiter) {
+		long now = System.nanoTime();
+		int admitted = 0;
+		while (rateLimiter.tryAcquire(now)) {
+			admitted++;
+		}
+		return admitted;
+	}
+
+	@Test
+	public void testReportAfterSilence() {
+		RecordingLogger delegate = new RecordingLogger("test.rateLimit", RecordingLogger.INFO);
+		DirectSlf4jLog log = new DirectSlf4jLog(delegate);
+		RateLimiter[] limiters = new RateLimiter[DirectSlf4jLog.LEVEL_COUNT];
+		limiters[LoggerStats.levelIndex(DirectSlf4jLog.WARN)] = new RateLimiter(10, 1000);
+		log.setRateLimiters(limiters);
+
+		for (int i = 0; i < 15; i++) {
+			log.warn("warn");
+		}
+		Assert.assertEquals(10, delegate.getEvents().size());
+
+		// not yet due
+		log.housekeeping(System.nanoTime());
+		Assert.assertEquals(10, delegate.getEvents().size());
+
+		log.housekeeping(System.nanoTime() + TimeUnit.SECONDS.toNanos(2));
+		Assert.assertEquals(11, delegate.getEvents().size());
+		Assert.assertEquals("Suppressed 5 WARN messages from test.rateLimit", delegate.getEvents().get(10).getMessage());
+
+		for (int i = 0; i < 15; i++) {
+			log.warn("warn");
+		}
+		// as on release
+		log.flushPending();
+		Assert.assertEquals("Suppressed 15 WARN messages from test.rateLimit", delegate.getEvents().get(11).getMessage());
+	}
+}
@@ -0,0 +1,86 @@
+package org.apache.juli.logging;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.mklinger.tomcat.juli.logging.RecordingLogger;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class SamplingRatesTest {
+	@After
+	public void tearDown() {
+		SamplingRates.INSTANCE.clear();
+	}
+
+	@Test
+	public void testResolve() {
+		SamplingRates.INSTANCE.setRate("org.apache.coyote", "", 10);
+		SamplingRates.INSTANCE.setRate("org.apache.coyote.http11", "DEBUG", 1000);
+
+		Assert.assertArrayEquals(new int[] { 10, 1000 }, SamplingRates.INSTANCE.resolve("org.apache.coyote.http11.Http11Processor"));
+		Assert.assertArrayEquals(new int[] { 10, 10 }, SamplingRates.INSTANCE.resolve("org.apache.coyote.ajp.AjpProcessor"));
+		Assert.assertNull(SamplingRates.INSTANCE.resolve("org.apache.coyotex"));
+		Assert.assertArrayEquals(new String[] { "org.apache.coyote@TRACE=10", "org.apache.coyote@DEBUG=10",
+				"org.apache.coyote.http11@DEBUG=1000" }, SamplingRates.INSTANCE.getRates());
+	}
+
+	@Test
+	public void testLevelRulePrecedence() {
+		SamplingRates.INSTANCE.configure("org.apache=10,org.apache@DEBUG=1000");
+		Assert.assertArrayEquals(new int[] { 10, 1000 }, SamplingRates.INSTANCE.resolve("org.apache.catalina.Server"));
+
+		SamplingRates.INSTANCE.configure("org.apache@DEBUG=1000,org.apache=10");
+		Assert.assertArrayEquals(new int[] { 10, 1000 }, SamplingRates.INSTANCE.resolve("org.apache.catalina.Server"));
+	}
+
+	@Test
+	public void testAttributeChange() {
+		RecordingLogger delegate = new RecordingLogger("test.samplingAttribute", RecordingLogger.TRACE);
+		Log log = new DirectSlf4jLog(delegate);
+		log.debug("all");
+
+		LogFactory.getFactory().setAttribute(SamplingRates.SAMPLING_PROPERTY, "test.samplingAttribute@DEBUG=1000000");
+		try {
+			for (int i = 0; i < 100; i++) {
+				log.debug("sampled");
+			}
+			Assert.assertTrue(delegate.getEvents().size() < 10);
+		} finally {
+			LogFactory.getFactory().removeAttribute(SamplingRates.SAMPLING_PROPERTY);
+		}
+
+		int events = delegate.getEvents().size();
+		log.debug("all");
+		Assert.assertEquals(events + 1, delegate.getEvents().size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInfoNotSampled() {
+		SamplingRates.INSTANCE.setRate("org.apache.coyote", "INFO", 10);
+	}
+
+	@Test
+	public void testSampling() {
+		RecordingLogger delegate = new RecordingLogger("test.sampling", RecordingLogger.TRACE);
+		Log log = new DirectSlf4jLog(delegate);
+
+		SamplingRates.INSTANCE.setRate("test.sampling", "DEBUG", 100);
+		for (int i = 0; i < 10_000; i++) {
+			log.debug("sampled");
+		}
+		log.info("not sampled");
+
+		int events = delegate.getEvents().size();
+		// 100 expected, about 10 standard deviations
+		Assert.assertTrue("Unexpected number of events: " + events, events > 1 && events < 200);
+		Assert.assertEquals("sampled [sampled 1/100]", delegate.getEvents().get(0).getMessage());
+		Assert.assertEquals("not sampled", delegate.getEvents().get(events - 1).getMessage());
+
+		SamplingRates.INSTANCE.removeRate("test.sampling");
+		log.debug("all");
+		Assert.assertEquals("all", delegate.getEvents().get(events).getMessage());
+	}
+}
@@ -0,0 +1,92 @@
+package org.apache.juli.logging;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.mklinger.tomcat.juli.logging.RecordingLogger;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class ThreadLevelsTest {
+	@Test
+	public void testCurrentThread() throws InterruptedException {
+		RecordingLogger delegate = new RecordingLogger("test.threadlevels", RecordingLogger.INFO);
+		Log log = new DirectSlf4jLog(delegate);
+		Assert.assertFalse(ThreadLevels.isActive());
+
+		LogFactory.setThreadLevel("DEBUG");
+		try {
+			Assert.assertTrue(ThreadLevels.isActive());
+			Assert.assertTrue(log.isDebugEnabled());
+			Assert.assertFalse(log.isTraceEnabled());
+			log.debug("debug");
+			log.trace("trace");
+			Thread other = new Thread(() -> log.debug("other thread"));
+			other.start();
+			other.join();
+		} finally {
+			LogFactory.setThreadLevel(null);
+		}
+		Assert.assertFalse(ThreadLevels.isActive());
+		log.debug("not enabled");
+
+		Assert.assertEquals(1, delegate.getEvents().size());
+		Assert.assertEquals("[DEBUG] debug", delegate.getEvents().get(0).getMessage());
+		Assert.assertEquals(RecordingLogger.INFO, delegate.getEvents().get(0).getLevel());
+	}
+
+	@Test
+	public void testThreadNamePattern() throws InterruptedException {
+		RecordingLogger delegate = new RecordingLogger("test.threadlevels", RecordingLogger.WARN);
+		Log log = new DirectSlf4jLog(delegate);
+
+		ThreadLevels.INSTANCE.setThreadLevel("http-nio-*-exec-7", "TRACE");
+		try {
+			Assert.assertArrayEquals(new String[] { "http-nio-*-exec-7=TRACE" }, ThreadLevels.INSTANCE.getThreadLevels());
+			for (String name : new String[] { "http-nio-8080-exec-7", "http-nio-8080-exec-17" }) {
+				Thread thread = new Thread(() -> log.trace(Thread.currentThread().getName()), name);
+				thread.start();
+				thread.join();
+			}
+			Assert.assertFalse(log.isTraceEnabled());
+		} finally {
+			ThreadLevels.INSTANCE.clear();
+		}
+		Assert.assertFalse(ThreadLevels.isActive());
+
+		Assert.assertEquals(1, delegate.getEvents().size());
+		Assert.assertEquals("[TRACE] http-nio-8080-exec-7", delegate.getEvents().get(0).getMessage());
+		Assert.assertEquals(RecordingLogger.WARN, delegate.getEvents().get(0).getLevel());
+	}
+
+	@Test
+	public void testPatternLevelCached() throws InterruptedException {
+		RecordingLogger delegate = new RecordingLogger("test.threadlevels", RecordingLogger.WARN);
+		Log log = new DirectSlf4jLog(delegate);
+
+		ThreadLevels.INSTANCE.setThreadLevel("http-nio-*-exec-1", "DEBUG");
+		try {
+			boolean[] enabled = new boolean[5];
+			Thread thread = new Thread(() -> {
+				enabled[0] = log.isDebugEnabled();
+				// an equal name, but another String instance, as returned by Thread.getName() on Java 8
+				Thread.currentThread().setName(new String(Thread.currentThread().getName()));
+				enabled[1] = log.isDebugEnabled();
+				// the cached level belongs to the old name
+				Thread.currentThread().setName("http-nio-8080-exec-2");
+				enabled[2] = log.isDebugEnabled();
+				// and to the old patterns
+				ThreadLevels.INSTANCE.setThreadLevel("http-nio-*-exec-2", "DEBUG");
+				enabled[3] = log.isDebugEnabled();
+				ThreadLevels.INSTANCE.removeThreadLevel("http-nio-*-exec-2");
+				enabled[4] = log.isDebugEnabled();
+			}, "http-nio-8080-exec-1");
+			thread.start();
+			thread.join();
+			Assert.assertArrayEquals(new boolean[] { true, true, false, true, false }, enabled);
+		} finally {
+			ThreadLevels.INSTANCE.clear();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package org.apache.juli.logging;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class ThrowableFingerprintsTest {
+	@Test
+	public void testRepeats() {
+		ThrowableFingerprints fingerprints = new ThrowableFingerprints(1000, 16);
+		long now = System.nanoTime();
+
+		ThrowableFingerprints.Fingerprint first = null;
+		for (int i = 0; i < 5; i++) {
+			if (i == 3) {
+				// new window
+				now += TimeUnit.SECONDS.toNanos(2);
+			}
+			// same type and stack, different message
+			ThrowableFingerprints.Fingerprint fingerprint = fingerprints.get(newException("reset " + i), now);
+			Assert.assertEquals(i < 3 ? i + 1 : i - 2, fingerprint.nextOccurrence());
+			if (first == null) {
+				first = fingerprint;
+			}
+			Assert.assertEquals(first.getId(), fingerprint.getId());
+			Assert.assertEquals(i < 3, first == fingerprint);
+		}
+
+		ThrowableFingerprints.Fingerprint other = fingerprints.get(new IOException(newException("cause")), now);
+		Assert.assertNotEquals(first.getId(), other.getId());
+		Assert.assertEquals(1, other.nextOccurrence());
+	}
+
+	@Test
+	public void testBounded() {
+		ThrowableFingerprints fingerprints = new ThrowableFingerprints(1000, 4);
+		long now = System.nanoTime();
+		Throwable t = new Exception();
+		for (int i = 0; i < 10; i++) {
+			t = new RuntimeException(t);
+			fingerprints.get(t, now);
+			Assert.assertTrue(fingerprints.size() <= 4);
+		}
+	}
+
+	@Test
+	public void testCauseCycle() {
+		Exception e1 = new Exception();
+		Exception e2 = new Exception(e1);
+		e1.initCause(e2);
+		Assert.assertEquals(ThrowableFingerprints.fingerprint(e1), ThrowableFingerprints.fingerprint(e1));
+	}
+
+	private static IOException newException(String message) {
+		return new IOException(message);
+	}
+}
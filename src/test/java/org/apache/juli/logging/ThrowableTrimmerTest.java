@@ -0,0 +1,97 @@
+package org.apache.juli.logging;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de - klingerm
+ */
+public class ThrowableTrimmerTest {
+	private final ThrowableTrimmer trimmer = new ThrowableTrimmer(6, 1,
+			new String[] { "org.apache.catalina.core", "org.apache.tomcat.util.net" });
+
+	@Test
+	public void testCollapse() {
+		List<StackTraceElement> frames = new ArrayList<>();
+		frames.add(frame("com.example.Servlet"));
+		frames.add(frame("org.apache.catalina.core.ApplicationFilterChain"));
+		frames.add(frame("org.apache.catalina.core.StandardWrapperValve"));
+		frames.add(frame("org.apache.catalina.core.StandardContextValve"));
+		frames.add(frame("org.apache.catalina.connector.CoyoteAdapter"));
+		frames.add(frame("org.apache.tomcat.util.net.NioEndpoint$SocketProcessor"));
+		frames.add(frame("org.apache.tomcat.util.net.SocketProcessorBase"));
+		frames.add(frame("org.apache.catalina.coreutil.Other"));
+
+		StackTraceElement[] trimmed = trimmer.trimFrames(frames.toArray(new StackTraceElement[0]));
+
+		Assert.assertEquals(5, trimmed.length);
+		Assert.assertEquals("com.example.Servlet", trimmed[0].getClassName());
+		Assert.assertEquals("org.apache.catalina.core.*", trimmed[1].getClassName());
+		Assert.assertEquals("<3 frames>", trimmed[1].getMethodName());
+		Assert.assertEquals("org.apache.catalina.connector.CoyoteAdapter", trimmed[2].getClassName());
+		Assert.assertEquals("org.apache.tomcat.util.net.*", trimmed[3].getClassName());
+		Assert.assertEquals("<2 frames>", trimmed[3].getMethodName());
+		Assert.assertEquals("org.apache.catalina.coreutil.Other", trimmed[4].getClassName());
+	}
+
+	@Test
+	public void testMaxFramesAndCauses() {
+		IOException root = new IOException("root");
+		root.setStackTrace(frames(3));
+		RuntimeException middle = new RuntimeException("middle", root);
+		middle.setStackTrace(frames(3));
+		IllegalStateException top = new IllegalStateException("top", middle);
+		top.setStackTrace(frames(10));
+
+		Throwable trimmed = trimmer.trim(top);
+
+		Assert.assertEquals(top.toString(), trimmed.toString());
+		Assert.assertEquals(7, trimmed.getStackTrace().length);
+		Assert.assertEquals("<4 more frames>", trimmed.getStackTrace()[6].getMethodName());
+		Assert.assertEquals(middle.toString(), trimmed.getCause().toString());
+		Assert.assertNull(trimmed.getCause().getCause());
+
+		StringWriter sw = new StringWriter();
+		trimmed.printStackTrace(new PrintWriter(sw));
+		Assert.assertTrue(sw.toString(), sw.toString().startsWith("java.lang.IllegalStateException: top"));
+		Assert.assertTrue(sw.toString(), sw.toString().contains("Caused by: java.lang.RuntimeException: middle"));
+	}
+
+	@Test
+	public void testCustomToString() {
+		IllegalStateException t = new IllegalStateException("message") {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public String toString() {
+				return "custom: " + getMessage();
+			}
+		};
+		t.setStackTrace(frames(3));
+
+		Throwable trimmed = trimmer.trim(t);
+
+		Assert.assertEquals("custom: message", trimmed.toString());
+		StringWriter sw = new StringWriter();
+		trimmed.printStackTrace(new PrintWriter(sw));
+		Assert.assertTrue(sw.toString(), sw.toString().startsWith("custom: message"));
+	}
+
+	private static StackTraceElement[] frames(int count) {
+		StackTraceElement[] frames = new StackTraceElement[count];
+		for (int i = 0; i < count; i++) {
+			frames[i] = frame("com.example.Class" + i);
+		}
+		return frames;
+	}
+
+	private static StackTraceElement frame(String className) {
+		return new StackTraceElement(className, "method", "Source.java", 42);
+	}
+}